@@ -11,7 +11,7 @@ import lombok.Getter;
 @Getter
 public enum DownloadRefServiceEnum {
 
-    DOWNLOAD_ZTO_BILLS("DOWNLOAD_ZTO_BILLS", "com.seeho.downloadcenter.domain.dotask.process.impl.ZTOBillsQueryImpl", 15L, "ZTO bill download service"),
+    DOWNLOAD_ZTO_BILLS("DOWNLOAD_ZTO_BILLS", "com.seeho.downloadcenter.domain.dotask.process.impl.ZTOBillsQueryImpl", 15L, 2, 4, 1, 2, "ZTO bill download service"),
 
     ;
 
@@ -19,6 +19,14 @@ public enum DownloadRefServiceEnum {
     private String contextBeanName;
     /** Delay for MQ messages (seconds); zero means immediate dispatch. */
     private Long timeout = 0L;
+    /** Segments an export holds at once, fetched ahead or being written; zero or one keeps fetch and write serial. */
+    private Integer prefetchDepth = 0;
+    /** Maximum segment queries of this type running at once on the shared fetch pool. */
+    private Integer fetchParallelism = 1;
+    /** Share of in-memory queue dispatches relative to other types; 2 is served twice as often as 1. */
+    private Integer queueWeight = 1;
+    /** Tasks of this type running at once on a node, in every queue mode; zero means no limit. */
+    private Integer maxConcurrency = 0;
     private String desc;
 
 
@@ -0,0 +1,46 @@
+package com.seeho.downloadcenter.base.enums;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Output file formats an export task can be written in.
+ */
+@Getter
+@AllArgsConstructor
+public enum ExportFormatEnum {
+
+    XLSX("XLSX", "xlsx", null, false, "Excel workbook"),
+    CSV("CSV", "csv", ',', false, "Comma-separated values"),
+    TSV("TSV", "tsv", '\t', false, "Tab-separated values"),
+    CSV_GZIP("CSV_GZIP", "csv.gz", ',', true, "Gzip-compressed comma-separated values"),
+    TSV_GZIP("TSV_GZIP", "tsv.gz", '\t', true, "Gzip-compressed tab-separated values"),
+
+    ;
+
+    private final String code;
+    private final String extension;
+    /** Field delimiter for text formats; {@code null} for workbooks. */
+    private final Character delimiter;
+    private final boolean gzip;
+    private final String desc;
+
+    public boolean isDelimited() {
+        return delimiter != null;
+    }
+
+    /** Resolves a persisted format code; blank means the default {@link #XLSX}. */
+    public static ExportFormatEnum matchFormat(String code) {
+        if (null == code || code.isBlank()) {
+            return XLSX;
+        }
+        String trimmedCode = code.trim();
+        for (ExportFormatEnum value : values()) {
+            if (value.getCode().equalsIgnoreCase(trimmedCode)) {
+                return value;
+            }
+        }
+        throw new BusinessException("Unsupported export format: " + code);
+    }
+}
@@ -0,0 +1,25 @@
+package com.seeho.downloadcenter.base.model;
+
+import lombok.Data;
+
+/**
+ * State of the in-memory consumer pool and the signals its autoscaler last acted on.
+ */
+@Data
+public class ConsumerPoolDTO {
+
+    private String mode;
+    private Boolean autoscaleEnabled;
+    private Integer minWorkers;
+    private Integer maxWorkers;
+    /** Bulk workers the autoscaler currently wants. */
+    private Integer targetWorkers;
+    /** Bulk workers currently running their loop. */
+    private Integer liveWorkers;
+    private Integer fastWorkers;
+    /** Capacity of each size lane. */
+    private Integer queueCapacity;
+    private Integer queueDepth;
+    private Long oldestWaitMillis;
+    private Long fetchLatencyMillis;
+}
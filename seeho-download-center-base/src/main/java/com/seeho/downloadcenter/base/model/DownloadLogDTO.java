@@ -1,6 +1,7 @@
 package com.seeho.downloadcenter.base.model;
 
 import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
+import com.seeho.downloadcenter.base.enums.ExportFormatEnum;
 import lombok.Data;
 
 import java.util.List;
@@ -15,4 +16,7 @@ public class DownloadLogDTO {
 
     /** Dynamic column selection passed from the client side. */
     private List<DownloadColumnDTO> titles;
+
+    /** Output file format; defaults to XLSX. */
+    private ExportFormatEnum exportFormat;
 }
@@ -0,0 +1,38 @@
+package com.seeho.downloadcenter.base.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Persisted progress of an export written in parts: the frozen split plan and the part files finished so far.
+ */
+@Data
+public class ExportCheckpointDTO {
+
+    private Long taskId;
+
+    /** Fingerprint of the task setup (type, condition, titles, format) the plan was built for. */
+    private String signature;
+
+    /** Parts are bundled into a zip when true, stitched into one delimited file otherwise. */
+    private boolean sharded;
+
+    private long createTimeMillis;
+
+    private List<Part> parts;
+
+    @Data
+    public static class Part {
+
+        private int index;
+
+        /** Segment conditions of this part as JSON, in export order. */
+        private List<String> conditions;
+
+        private long rowCount;
+
+        /** Finished part file; {@code null} until the part has been written completely. */
+        private String filePath;
+    }
+}
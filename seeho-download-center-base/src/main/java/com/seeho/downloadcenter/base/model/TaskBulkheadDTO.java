@@ -0,0 +1,20 @@
+package com.seeho.downloadcenter.base.model;
+
+import lombok.Data;
+
+/**
+ * Concurrency limit of one download type and how often its queued tasks had to wait for it.
+ */
+@Data
+public class TaskBulkheadDTO {
+
+    private String downloadType;
+    /** Tasks of the type allowed to run at once; zero means unlimited. */
+    private Integer maxConcurrency;
+    private Integer running;
+    /** Times a queued task of the type was held back because the type was at its limit. */
+    private Long starvations;
+    /** How long the type has currently been held back; zero when it is not. */
+    private Long starvedMillis;
+    private Long maxStarvedMillis;
+}
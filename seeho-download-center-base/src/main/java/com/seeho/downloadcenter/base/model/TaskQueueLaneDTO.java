@@ -0,0 +1,24 @@
+package com.seeho.downloadcenter.base.model;
+
+import lombok.Data;
+
+/**
+ * One lane of the fair task queue: a download type, or a user within it when {@code userId} is set.
+ */
+@Data
+public class TaskQueueLaneDTO {
+
+    /** Size lane the row belongs to: {@code fast} or {@code bulk}. */
+    private String lane;
+    private String downloadType;
+    private Long userId;
+    private Integer weight;
+    /** Tasks currently queued in the lane. */
+    private Integer depth;
+    /** Age of the oldest queued task. */
+    private Long oldestWaitMillis;
+    /** Tasks dispatched from the lane since startup; type lanes only. */
+    private Long dispatched;
+    /** 95th percentile queue wait of recently dispatched tasks; type lanes only. */
+    private Long p95WaitMillis;
+}
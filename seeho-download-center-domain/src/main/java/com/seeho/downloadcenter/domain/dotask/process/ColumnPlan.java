@@ -0,0 +1,251 @@
+package com.seeho.downloadcenter.domain.dotask.process;
+
+import com.alibaba.excel.util.StringUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.seeho.downloadcenter.base.model.DownloadColumnDTO;
+import com.seeho.downloadcenter.domain.utils.ExportColumns;
+import com.seeho.downloadcenter.domain.utils.FieldAccessors;
+import com.seeho.downloadcenter.domain.utils.JsonUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Dynamic-head column layout compiled once from the client's titles JSON.
+ * Enabled columns are resolved up front to {@link FieldAccessors} slots and formatters, so mapping a row
+ * is a plain indexed loop: no JSON, no map lookups and no formatter construction per cell.
+ * Date formatters are immutable and shared; number formatters are {@link ThreadLocal} because
+ * {@link DecimalFormat} is not thread-safe. Plans are cached per service, DTO class and titles JSON,
+ * evicting the least recently used one past {@value #MAX_CACHED_PLANS} entries.
+ */
+@Slf4j
+public final class ColumnPlan<R> implements ExportColumns<R> {
+
+    private static final int MAX_CACHED_PLANS = 512;
+
+    /** Access-ordered, so a hit keeps a plan in use from being evicted. */
+    private static final Map<PlanKey, ColumnPlan<?>> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<PlanKey, ColumnPlan<?>>(64, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<PlanKey, ColumnPlan<?>> eldest) {
+                    return size() > MAX_CACHED_PLANS;
+                }
+            });
+
+    private final List<List<String>> head;
+    private final List<String> header;
+    /** Per-column getter; {@code null} when the field has none. */
+    private final List<Function<R, Object>> getters;
+    /** Per-column formatter; {@code null} when the value is written as is. */
+    private final List<UnaryOperator<Object>> formatters;
+
+    private ColumnPlan(List<List<String>> head, List<Function<R, Object>> getters, List<UnaryOperator<Object>> formatters) {
+        this.head = head;
+        List<String> flatHeader = new ArrayList<>(head.size());
+        for (List<String> levels : head) {
+            flatHeader.add(levels.get(levels.size() - 1));
+        }
+        this.header = Collections.unmodifiableList(flatHeader);
+        this.getters = getters;
+        this.formatters = formatters;
+    }
+
+    /**
+     * Returns the plan for {@code titlesJson}, compiling it on first use.
+     * Returns {@code null} when there are no usable titles, in which case the annotation head applies.
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> ColumnPlan<R> of(QueryExportDataService<?, R> service, String titlesJson) {
+        if (StringUtils.isBlank(titlesJson)) {
+            return null;
+        }
+        PlanKey key = new PlanKey(service.getClass(), service.getExportDataClass(), titlesJson);
+        ColumnPlan<R> plan = (ColumnPlan<R>) CACHE.get(key);
+        if (plan != null) {
+            return plan;
+        }
+        plan = compile(service, titlesJson);
+        if (plan != null) {
+            CACHE.put(key, plan);
+        }
+        return plan;
+    }
+
+    public List<List<String>> getHead() {
+        return head;
+    }
+
+    @Override
+    public List<String> getHeader() {
+        return header;
+    }
+
+    @Override
+    public int size() {
+        return getters.size();
+    }
+
+    @Override
+    public Object cell(R row, int column) {
+        Function<R, Object> getter = getters.get(column);
+        Object value = getter == null ? null : getter.apply(row);
+        UnaryOperator<Object> formatter = formatters.get(column);
+        return value == null || formatter == null ? value : formatter.apply(value);
+    }
+
+    /** Maps a DTO to its cells in column order. */
+    public Function<R, List<Object>> rowMapper() {
+        return this::mapRow;
+    }
+
+    private List<Object> mapRow(R dto) {
+        List<Object> row = new ArrayList<>(getters.size());
+        for (int i = 0; i < getters.size(); i++) {
+            row.add(cell(dto, i));
+        }
+        return row;
+    }
+
+    private static <R> ColumnPlan<R> compile(QueryExportDataService<?, R> service, String titlesJson) {
+        List<DownloadColumnDTO> columns;
+        try {
+            columns = JsonUtil.fromJson(titlesJson, new TypeReference<List<DownloadColumnDTO>>() {
+            });
+        } catch (Exception e) {
+            log.warn("[ColumnPlan] Failed to parse titlesJson, falling back to annotation head: {}", e.getMessage());
+            return null;
+        }
+        if (columns == null || columns.isEmpty()) {
+            return null;
+        }
+
+        List<DownloadColumnDTO> enabledColumns = new ArrayList<>(columns.size());
+        for (DownloadColumnDTO col : columns) {
+            if (Boolean.TRUE.equals(col.getEnable())) {
+                enabledColumns.add(col);
+            }
+        }
+
+        FieldAccessors<R> accessors = service.fieldAccessors();
+        boolean customFormat = overridesFormatValue(service);
+
+        List<List<String>> head = new ArrayList<>(enabledColumns.size());
+        List<Function<R, Object>> getters = new ArrayList<>(enabledColumns.size());
+        List<UnaryOperator<Object>> formatters = new ArrayList<>(enabledColumns.size());
+        for (DownloadColumnDTO col : enabledColumns) {
+            head.add(Collections.singletonList(col.getHeader()));
+            int slot = accessors.slotOf(col.getField());
+            if (slot < 0) {
+                log.warn("[ColumnPlan] No getter for field={}, column will be empty", col.getField());
+                getters.add(null);
+            } else {
+                getters.add(accessors.reader(slot));
+            }
+            formatters.add(customFormat ? value -> service.formatValue(value, col) : buildFormatter(col));
+        }
+        log.info("[ColumnPlan] Compiled column plan, service={}, columns={}",
+                service.getClass().getSimpleName(), enabledColumns.size());
+        return new ColumnPlan<>(Collections.unmodifiableList(head), getters, formatters);
+    }
+
+    /**
+     * Prebuilt equivalent of {@link QueryExportDataService#formatValue}. An invalid pattern is logged and
+     * its values are written raw, so one bad column does not fail the export.
+     */
+    private static UnaryOperator<Object> buildFormatter(DownloadColumnDTO col) {
+        DateTimeFormatter dateFormatter = null;
+        ThreadLocal<DecimalFormat> numberFormatter = null;
+        if (StringUtils.isNotBlank(col.getDateFormat())) {
+            try {
+                dateFormatter = DateTimeFormatter.ofPattern(col.getDateFormat());
+            } catch (IllegalArgumentException e) {
+                log.warn("[ColumnPlan] Invalid dateFormat for field={}, writing raw values: {}", col.getField(), e.getMessage());
+            }
+        }
+        if (StringUtils.isNotBlank(col.getNumberFormat())) {
+            String pattern = col.getNumberFormat();
+            try {
+                new DecimalFormat(pattern);
+                numberFormatter = ThreadLocal.withInitial(() -> new DecimalFormat(pattern));
+            } catch (IllegalArgumentException e) {
+                log.warn("[ColumnPlan] Invalid numberFormat for field={}, writing raw values: {}", col.getField(), e.getMessage());
+            }
+        }
+        if (dateFormatter == null && numberFormatter == null) {
+            return null;
+        }
+
+        DateTimeFormatter dates = dateFormatter;
+        ThreadLocal<DecimalFormat> numbers = numberFormatter;
+        return value -> {
+            if (dates != null) {
+                if (value instanceof LocalDateTime) {
+                    return dates.format((LocalDateTime) value);
+                } else if (value instanceof LocalDate) {
+                    return dates.format((LocalDate) value);
+                }
+            }
+            if (numbers != null && value instanceof Number) {
+                return numbers.get().format(value);
+            }
+            return value;
+        };
+    }
+
+    private static boolean overridesFormatValue(QueryExportDataService<?, ?> service) {
+        try {
+            return service.getClass().getMethod("formatValue", Object.class, DownloadColumnDTO.class)
+                    .getDeclaringClass() != QueryExportDataService.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static final class PlanKey {
+
+        private final Class<?> serviceClass;
+        private final Class<?> dataClass;
+        private final String titlesJson;
+        private final int hash;
+
+        private PlanKey(Class<?> serviceClass, Class<?> dataClass, String titlesJson) {
+            this.serviceClass = serviceClass;
+            this.dataClass = dataClass;
+            this.titlesJson = titlesJson;
+            this.hash = Objects.hash(serviceClass, dataClass, titlesJson);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) o;
+            return serviceClass == other.serviceClass
+                    && dataClass == other.dataClass
+                    && titlesJson.equals(other.titlesJson);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.seeho.downloadcenter.domain.dotask.process;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seeho.downloadcenter.base.model.ExportCheckpointDTO;
+import com.seeho.downloadcenter.domain.utils.ExportFileUtils;
+import com.seeho.downloadcenter.domain.utils.ExportPathBuilder;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps export checkpoints as JSON files under {@code {base-path}/.checkpoint/{taskId}.json}.
+ * A checkpoint lives from the moment a multi-part plan is built until the task succeeds, so a retry of a
+ * failed task reuses the plan and the finished part files instead of re-splitting and re-querying.
+ * Checkpoints of tasks that are never retried are purged after {@code retention-hours}.
+ */
+@Slf4j
+@Component
+public class ExportCheckpointStore {
+
+    private static final String CHECKPOINT_DIR = ".checkpoint";
+
+    /** Own mapper for checkpoint files, so a file written by a newer version with more fields still loads. */
+    private static final ObjectMapper CHECKPOINT_MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @Value("${download.export.checkpoint.enabled:true}")
+    private boolean enabled;
+
+    /** Rows per part when a single delimited file is written in resumable parts. */
+    @Value("${download.export.checkpoint.rows-per-part:200000}")
+    private long rowsPerPart;
+
+    @Value("${download.export.checkpoint.retention-hours:24}")
+    private long retentionHours;
+
+    @Resource
+    private ExportPathBuilder exportPathBuilder;
+
+    /**
+     * Guards part updates per task, so checkpoints of different tasks are written concurrently; file writes
+     * under a monitor would pin virtual consumer threads. Entries are dropped when the checkpoint is discarded.
+     */
+    private final Map<Long, ReentrantLock> taskLocks = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getRowsPerPart() {
+        return rowsPerPart;
+    }
+
+    /**
+     * Returns the checkpoint of {@code taskId} if one exists for the same task setup. A checkpoint with a
+     * different signature is discarded together with its part files.
+     */
+    public ExportCheckpointDTO load(Long taskId, String signature) {
+        if (!enabled) {
+            return null;
+        }
+        Path path = checkpointPath(taskId);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        ExportCheckpointDTO checkpoint;
+        try {
+            checkpoint = read(path);
+        } catch (Exception e) {
+            log.warn("[ExportCheckpointStore] Unreadable checkpoint, starting over. taskId={}", taskId, e);
+            ExportFileUtils.deleteQuietly(path.toString());
+            return null;
+        }
+        if (checkpoint == null || checkpoint.getParts() == null) {
+            log.warn("[ExportCheckpointStore] Checkpoint has no parts, starting over. taskId={}", taskId);
+            discard(checkpoint);
+            ExportFileUtils.deleteQuietly(path.toString());
+            return null;
+        }
+        if (!signature.equals(checkpoint.getSignature())) {
+            log.warn("[ExportCheckpointStore] Checkpoint does not match the task setup, starting over. taskId={}", taskId);
+            discard(checkpoint);
+            ExportFileUtils.deleteQuietly(path.toString());
+            return null;
+        }
+        for (ExportCheckpointDTO.Part part : checkpoint.getParts()) {
+            if (part.getFilePath() != null && !Files.exists(Paths.get(part.getFilePath()))) {
+                log.warn("[ExportCheckpointStore] Part file is gone, part will be rewritten. taskId={}, part={}",
+                        taskId, part.getIndex());
+                part.setFilePath(null);
+            }
+        }
+        return checkpoint;
+    }
+
+    /** Writes the checkpoint atomically, replacing the previous version. */
+    public void save(ExportCheckpointDTO checkpoint) {
+        if (!enabled) {
+            return;
+        }
+        Path path = checkpointPath(checkpoint.getTaskId());
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(temp, CHECKPOINT_MAPPER.writeValueAsString(checkpoint), StandardCharsets.UTF_8);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Losing a checkpoint only costs the resume, never the export itself.
+            log.warn("[ExportCheckpointStore] Failed to save checkpoint, taskId={}", checkpoint.getTaskId(), e);
+        }
+    }
+
+    /** Records a finished part; safe to call from parallel part writers. */
+    public void markPartDone(ExportCheckpointDTO checkpoint, int index, String filePath) {
+        ReentrantLock partLock = taskLocks.computeIfAbsent(checkpoint.getTaskId(), taskId -> new ReentrantLock());
+        partLock.lock();
+        try {
+            checkpoint.getParts().get(index).setFilePath(filePath);
+            save(checkpoint);
+        } finally {
+            partLock.unlock();
+        }
+        log.debug("[ExportCheckpointStore] Part done, taskId={}, part={}", checkpoint.getTaskId(), index);
+    }
+
+    /** Deletes the checkpoint and every part file it records. */
+    public void discard(ExportCheckpointDTO checkpoint) {
+        if (checkpoint == null) {
+            return;
+        }
+        ReentrantLock partLock = checkpoint.getTaskId() == null ? new ReentrantLock()
+                : taskLocks.computeIfAbsent(checkpoint.getTaskId(), taskId -> new ReentrantLock());
+        partLock.lock();
+        try {
+            if (checkpoint.getParts() != null) {
+                for (ExportCheckpointDTO.Part part : checkpoint.getParts()) {
+                    if (part.getFilePath() != null) {
+                        ExportFileUtils.deleteQuietly(part.getFilePath());
+                    }
+                }
+            }
+        } finally {
+            partLock.unlock();
+        }
+        if (checkpoint.getTaskId() != null) {
+            ExportFileUtils.deleteQuietly(checkpointPath(checkpoint.getTaskId()).toString());
+            taskLocks.remove(checkpoint.getTaskId(), partLock);
+        }
+    }
+
+    /** Removes checkpoints older than the retention period; returns how many were purged. */
+    public int purgeExpired() {
+        Path dir = Paths.get(exportPathBuilder.getBasePath(), CHECKPOINT_DIR);
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours);
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() >= cutoff) {
+                    continue;
+                }
+                try {
+                    discard(read(file));
+                } catch (Exception e) {
+                    log.warn("[ExportCheckpointStore] Unreadable expired checkpoint: {}", file, e);
+                }
+                ExportFileUtils.deleteQuietly(file.toString());
+                purged++;
+            }
+        } catch (IOException e) {
+            log.warn("[ExportCheckpointStore] Failed to scan checkpoints in {}", dir, e);
+        }
+        return purged;
+    }
+
+    private static ExportCheckpointDTO read(Path path) throws IOException {
+        return CHECKPOINT_MAPPER.readValue(Files.readString(path, StandardCharsets.UTF_8), ExportCheckpointDTO.class);
+    }
+
+    private Path checkpointPath(Long taskId) {
+        return Paths.get(exportPathBuilder.getBasePath(), CHECKPOINT_DIR, taskId + ".json");
+    }
+}
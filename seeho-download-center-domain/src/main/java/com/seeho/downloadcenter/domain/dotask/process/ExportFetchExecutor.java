@@ -0,0 +1,198 @@
+package com.seeho.downloadcenter.domain.dotask.process;
+
+import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared worker pool that runs segment queries for every export on this node.
+ * The pool bounds the total number of fetch threads, while a per-type limiter caps how many
+ * queries against the same source run at once ({@link DownloadRefServiceEnum#getFetchParallelism()}).
+ * A separate fork-join pool runs the COUNT queries of split planning, see {@link #getSplitPool()}, and
+ * cursor-streamed exports get producer threads of their own, see {@link #forStreaming()}.
+ */
+@Slf4j
+@Component
+public class ExportFetchExecutor implements InitializingBean, DisposableBean {
+
+    @Value("${download.export.fetch.pool-size:8}")
+    private int poolSize;
+
+    /** Concurrent COUNT queries while bisecting a split plan; 1 plans sequentially on the caller. */
+    @Value("${download.export.split.parallelism:4}")
+    private int splitParallelism;
+
+    /** Cursor streams open at once; further streamed exports wait for a producer thread. */
+    @Value("${download.export.fetch.stream-pool-size:8}")
+    private int streamPoolSize;
+
+    private ThreadPoolExecutor fetchPool;
+
+    private ThreadPoolExecutor streamPool;
+
+    private ForkJoinPool splitPool;
+
+    private final Map<DownloadRefServiceEnum, Executor> typeExecutors = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterPropertiesSet() {
+        AtomicInteger count = new AtomicInteger();
+        this.fetchPool = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "Export-Fetch-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.fetchPool.allowCoreThreadTimeOut(true);
+        log.info("[ExportFetchExecutor] Fetch pool started with {} threads", poolSize);
+
+        AtomicInteger streamCount = new AtomicInteger();
+        this.streamPool = new ThreadPoolExecutor(
+                streamPoolSize,
+                streamPoolSize,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "Export-Stream-" + streamCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.streamPool.allowCoreThreadTimeOut(true);
+        log.info("[ExportFetchExecutor] Stream pool started with {} threads", streamPoolSize);
+
+        if (splitParallelism > 1) {
+            AtomicInteger splitCount = new AtomicInteger();
+            // maximumPoolSize = parallelism and saturate -> true: a worker blocked in join or in a COUNT query
+            // is never compensated with an extra thread, so the planning load on the source stays bounded.
+            this.splitPool = new ForkJoinPool(
+                    splitParallelism,
+                    pool -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("Export-Split-" + splitCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    null,
+                    false,
+                    0,
+                    splitParallelism,
+                    1,
+                    pool -> true,
+                    60L,
+                    TimeUnit.SECONDS);
+            log.info("[ExportFetchExecutor] Split planning pool started with parallelism {}", splitParallelism);
+        }
+    }
+
+    /** Pool for fork-join split planning, or {@code null} when planning runs sequentially. */
+    public ForkJoinPool getSplitPool() {
+        return splitPool;
+    }
+
+    /**
+     * Returns an executor that runs fetches on the shared pool without exceeding the type's concurrency cap.
+     * Fetches over the cap are queued and started as earlier ones finish, so neither the submitting writer
+     * nor a pool thread ever blocks waiting for a permit.
+     */
+    public Executor forType(DownloadRefServiceEnum downloadEnum) {
+        return typeExecutors.computeIfAbsent(downloadEnum,
+                e -> new TypeLimitedExecutor(e.getDlCode(), Math.max(e.getFetchParallelism(), 1)));
+    }
+
+    /**
+     * Executor for the producer of a cursor-streamed export. A stream holds its thread and connection for
+     * the whole export, so it runs here instead of on the fetch pool, where it would occupy one of its
+     * type's fetch slots and a fetch thread until the export ends.
+     */
+    public Executor forStreaming() {
+        return streamPool;
+    }
+
+    @Override
+    public void destroy() {
+        log.info("[ExportFetchExecutor] Shutting down fetch pool...");
+        fetchPool.shutdownNow();
+        streamPool.shutdownNow();
+        if (splitPool != null) {
+            splitPool.shutdownNow();
+        }
+    }
+
+    /** Runs at most {@code limit} tasks of one export type at a time on the shared pool. */
+    private final class TypeLimitedExecutor implements Executor {
+
+        private final String dlCode;
+        private final int limit;
+        private final Queue<Runnable> pending = new ArrayDeque<>();
+        private int running;
+
+        private TypeLimitedExecutor(String dlCode, int limit) {
+            this.dlCode = dlCode;
+            this.limit = limit;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                if (running >= limit) {
+                    pending.add(task);
+                    return;
+                }
+                running++;
+            }
+            dispatch(task);
+        }
+
+        private void dispatch(Runnable task) {
+            try {
+                fetchPool.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        onComplete();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.error("[ExportFetchExecutor] Fetch rejected by pool, type={}", dlCode, e);
+                onComplete();
+                throw e;
+            }
+        }
+
+        private void onComplete() {
+            Runnable next;
+            synchronized (this) {
+                next = pending.poll();
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
+            dispatch(next);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.seeho.downloadcenter.domain.dotask.process;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Moving average of export page fetch latency, read by the consumer autoscaler as a DB load signal.
+ */
+@Component
+public class FetchLatencyTracker {
+
+    /** Weight of the newest sample in the exponential moving average. */
+    private static final double ALPHA = 0.2;
+
+    /** Samples older than this no longer describe the database's current state. */
+    private static final long STALE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private double averageMillis;
+    private long lastSampleNanos;
+    private boolean sampled;
+
+    /** Runs one fetch and records how long it took, whether or not it succeeded. */
+    public <T> T time(Supplier<T> fetch) {
+        long start = System.nanoTime();
+        try {
+            return fetch.get();
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    public synchronized void record(long elapsedNanos) {
+        double millis = elapsedNanos / 1_000_000.0;
+        averageMillis = sampled ? averageMillis + ALPHA * (millis - averageMillis) : millis;
+        lastSampleNanos = System.nanoTime();
+        sampled = true;
+    }
+
+    /** Average fetch latency, or zero when nothing was fetched within the last minute. */
+    public synchronized long recentAverageMillis() {
+        if (!sampled || System.nanoTime() - lastSampleNanos > STALE_NANOS) {
+            return 0;
+        }
+        return Math.round(averageMillis);
+    }
+}
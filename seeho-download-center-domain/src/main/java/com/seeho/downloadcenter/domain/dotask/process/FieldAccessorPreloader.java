@@ -0,0 +1,28 @@
+package com.seeho.downloadcenter.domain.dotask.process;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Generates the field readers of every export DTO at startup, so the first export of each type
+ * does not pay for bytecode generation and a DTO without readable getters fails fast.
+ */
+@Slf4j
+@Component
+public class FieldAccessorPreloader implements InitializingBean {
+
+    @Resource
+    private List<QueryExportDataService<?, ?>> exportServices;
+
+    @Override
+    public void afterPropertiesSet() {
+        for (QueryExportDataService<?, ?> service : exportServices) {
+            int fields = service.fieldAccessors().size();
+            log.info("[FieldAccessorPreloader] Prepared {} fields for {}", fields, service.getClass().getSimpleName());
+        }
+    }
+}
@@ -3,20 +3,42 @@ package com.seeho.downloadcenter.domain.dotask.process;
 import com.seeho.downloadcenter.base.common.PageRequest;
 import org.springframework.util.Assert;
 import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
+import com.seeho.downloadcenter.base.enums.ExportFormatEnum;
 import com.seeho.downloadcenter.domain.utils.ExcelStreamWriter;
+import com.seeho.downloadcenter.base.model.ExportCheckpointDTO;
+import com.seeho.downloadcenter.domain.utils.ExportBatchIterator;
+import com.seeho.downloadcenter.domain.utils.ExportFileUtils;
 import com.seeho.downloadcenter.domain.utils.ExportPathBuilder;
+import com.seeho.downloadcenter.domain.utils.JsonUtil;
+import com.seeho.downloadcenter.domain.utils.KeysetPageIterator;
 import com.seeho.downloadcenter.domain.utils.ParamSplitUtils;
+import com.seeho.downloadcenter.domain.utils.SegmentPrefetcher;
+import com.seeho.downloadcenter.domain.utils.SplitSegment;
+import com.seeho.downloadcenter.domain.utils.StreamingBatchIterator;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
- * Coordinates parameter splitting, data querying, and Excel streaming.
+ * Coordinates parameter splitting, data querying, and streaming the export file in the task's format.
+ * Segment queries run on the shared {@link ExportFetchExecutor} and are written back in split order;
+ * exports above the shard threshold are written as parallel parts by {@link ShardedExportWriter}.
  */
 @Slf4j
 @Service
@@ -24,62 +46,311 @@ public class ManagerDataProcess {
     /** Maximum rows fetched per query before we split parameters. */
     public static final Long SINGLE_MAX_COUNT = 10000L;
 
+    /** Rows requested per page when the service supports keyset pagination. */
+    public static final int KEYSET_PAGE_SIZE = 5000;
+
+    /** Rows handed to the writer per chunk when the service streams its rows. */
+    public static final int STREAM_CHUNK_ROWS = 1000;
+
+    /** Chunks a streaming export may buffer ahead of the writer. */
+    public static final int STREAM_BUFFERED_CHUNKS = 4;
+
+    /** {@code download.export.xlsx-engine} value selecting {@link com.seeho.downloadcenter.domain.utils.DirectXlsxFileWriter}. */
+    public static final String XLSX_ENGINE_DIRECT = "direct";
+
+    /** Writer for dynamic-head XLSX exports: {@code easyexcel} (default) or {@code direct}. */
+    @Value("${download.export.xlsx-engine:easyexcel}")
+    private String xlsxEngine;
+
     @Resource
     private ExportPathBuilder exportPathBuilder;
 
+    @Resource
+    private ExportFetchExecutor exportFetchExecutor;
+
+    @Resource
+    private ShardedExportWriter shardedExportWriter;
+
+    @Resource
+    private ExportCheckpointStore exportCheckpointStore;
+
+    @Resource
+    private FetchLatencyTracker fetchLatencyTracker;
+
     public <C extends PageRequest, R> String queryDataAndWriteExcel(QueryExportDataService<C, R> service,
                                                                          DownloadLogPO downloadLogPO) {
         log.info("[ManagerDataProcess] Start export, taskId={}, downloadName={}",
                 downloadLogPO.getId(), downloadLogPO.getDownloadName());
 
         C condition = service.convertedDownloadCondition(downloadLogPO.getDownloadCondition());
+        DownloadRefServiceEnum downloadEnum = DownloadRefServiceEnum.matchDownloadType(downloadLogPO.getDownloadType());
+        ExportFormatEnum format = ExportFormatEnum.matchFormat(downloadLogPO.getExportFormat());
 
-        Long totalCount = service.queryTotalCount(condition);
-        log.info("[ManagerDataProcess] Total count={}", totalCount);
+        String filePathPrefix = exportPathBuilder.buildFilePathPrefix(downloadEnum, downloadLogPO.getDownloadName());
 
-        List<C> conditionList = new LinkedList<>();
+        ColumnPlan<R> columnPlan = service.resolveColumnPlan(downloadLogPO.getTitles());
 
-        if (totalCount <= SINGLE_MAX_COUNT) {
-            condition.setPageSize(SINGLE_MAX_COUNT.intValue());
-            log.info("[ManagerDataProcess] Single query mode, totalCount <= {}", SINGLE_MAX_COUNT);
-            conditionList.add(condition);
+        PartWriter<R> fileWriter;
+        if (columnPlan != null && format == ExportFormatEnum.XLSX && XLSX_ENGINE_DIRECT.equalsIgnoreCase(xlsxEngine)) {
+            log.info("[ManagerDataProcess] Using dynamic head mode, format={}, engine={}", format.getCode(), xlsxEngine);
+            fileWriter = (prefix, batches, withHeader) -> ExcelStreamWriter.writeDirectXlsx(prefix, columnPlan, batches);
+        } else if (columnPlan != null) {
+            log.info("[ManagerDataProcess] Using dynamic head mode, format={}", format.getCode());
+            List<List<String>> head = columnPlan.getHead();
+            Function<R, List<Object>> rowMapper = columnPlan.rowMapper();
+            fileWriter = (prefix, batches, withHeader) ->
+                    ExcelStreamWriter.writeDynamicWithMapper(prefix, head, batches, rowMapper, format, withHeader);
         } else {
-            log.info("[ManagerDataProcess] Split mode, totalCount > {}", SINGLE_MAX_COUNT);
-            ParamSplitUtils<C> splitUtils = service.initSplitUtils(condition);
-            Assert.notNull(splitUtils, "ParamSplitUtils cannot be null");
-            conditionList = splitUtils.split(condition);
-            log.info("[ManagerDataProcess] Split completed, segmentCount={}", conditionList.size());
+            log.info("[ManagerDataProcess] Using static annotation head mode, format={}", format.getCode());
+            Class<R> headClass = service.getExportDataClass();
+            fileWriter = (prefix, batches, withHeader) ->
+                    ExcelStreamWriter.writeBatchData(prefix, headClass, batches, format, withHeader);
         }
 
-        DownloadRefServiceEnum downloadEnum = DownloadRefServiceEnum.matchDownloadType(downloadLogPO.getDownloadType());
-        String filePathPrefix = exportPathBuilder.buildFilePathPrefix(downloadEnum, downloadLogPO.getDownloadName());
-
-        String titlesJson = downloadLogPO.getTitles();
-        List<List<String>> head = service.parseDynamicHead(titlesJson);
-        Function<R, List<Object>> rowMapper = service.buildRowMapper(titlesJson);
-
         String filePath;
-        if (head != null && rowMapper != null) {
-            log.info("[ManagerDataProcess] Using dynamic head mode");
-            filePath = ExcelStreamWriter.writeDynamicWithMapper(
-                    filePathPrefix,
-                    head,
-                    conditionList,
-                    service::queryExportData,
-                    rowMapper
-            );
+        if (service.supportsKeysetPaging()) {
+            log.info("[ManagerDataProcess] Keyset paging mode, pageSize={}", KEYSET_PAGE_SIZE);
+            condition.setPageSize(KEYSET_PAGE_SIZE);
+            int fetchWindow = resolveFetchWindow(downloadEnum, Integer.MAX_VALUE);
+            Executor fetchExecutor = fetchWindow > 0 ? exportFetchExecutor.forType(downloadEnum) : null;
+            try (ExportBatchIterator<R> batches = new KeysetPageIterator<>(
+                    condition,
+                    (page, lastKey) -> fetchLatencyTracker.time(() -> service.queryExportDataAfter(page, lastKey)),
+                    service::getKeysetKey, fetchExecutor)) {
+                filePath = fileWriter.write(filePathPrefix, batches, true);
+            }
         } else {
-            log.info("[ManagerDataProcess] Using static annotation head mode");
-            filePath = ExcelStreamWriter.writeBatchData(
-                    filePathPrefix,
-                    service.getExportDataClass(),
-                    conditionList,
-                    service::queryExportData
-            );
+            filePath = writeSplitExport(service, condition, downloadLogPO, downloadEnum, format, filePathPrefix, fileWriter);
         }
 
         log.info("[ManagerDataProcess] Export completed, filePath={}", filePath);
         return filePath;
     }
 
+    /**
+     * Writes a split-plan export. Small plans go to a single file. Large plans are written in parts that are
+     * checkpointed as they finish: in parallel and zipped when sharding applies, otherwise in order and
+     * stitched into one file (delimited formats only, a workbook cannot be stitched). A retry of a failed
+     * task resumes from its checkpoint, skipping both the split and every part already written.
+     */
+    private <C extends PageRequest, R> String writeSplitExport(QueryExportDataService<C, R> service,
+                                                               C condition,
+                                                               DownloadLogPO downloadLogPO,
+                                                               DownloadRefServiceEnum downloadEnum,
+                                                               ExportFormatEnum format,
+                                                               String filePathPrefix,
+                                                               PartWriter<R> fileWriter) {
+        String signature = checkpointSignature(downloadLogPO);
+        ExportCheckpointDTO checkpoint = exportCheckpointStore.load(downloadLogPO.getId(), signature);
+        if (checkpoint != null) {
+            long finished = checkpoint.getParts().stream().filter(part -> part.getFilePath() != null).count();
+            log.info("[ManagerDataProcess] Resuming from checkpoint, taskId={}, finishedParts={}/{}",
+                    downloadLogPO.getId(), finished, checkpoint.getParts().size());
+        } else {
+            Long totalCount = service.queryTotalCount(condition);
+            log.info("[ManagerDataProcess] Total count={}", totalCount);
+            if (totalCount <= SINGLE_MAX_COUNT) {
+                condition.setPageSize(SINGLE_MAX_COUNT.intValue());
+                log.info("[ManagerDataProcess] Single query mode, totalCount <= {}", SINGLE_MAX_COUNT);
+                try (ExportBatchIterator<R> batches = openSegmentBatches(service, Collections.singletonList(condition), downloadEnum)) {
+                    return fileWriter.write(filePathPrefix, batches, true);
+                }
+            }
+
+            log.info("[ManagerDataProcess] Split mode, totalCount > {}", SINGLE_MAX_COUNT);
+            ParamSplitUtils<C> splitUtils = initSplitUtils(service, condition);
+            boolean sharded = shardedExportWriter.shouldShard(totalCount);
+            boolean stitched = !sharded && format.isDelimited()
+                    && exportCheckpointStore.isEnabled() && totalCount > exportCheckpointStore.getRowsPerPart();
+            if (!sharded && !stitched) {
+                // One output file and no parts to size: write segments as the plan yields them.
+                Iterator<C> conditions = conditionsOf(splitUtils.iterate(condition));
+                try (ExportBatchIterator<R> batches = openSegmentBatches(service, conditions, Integer.MAX_VALUE, downloadEnum)) {
+                    return fileWriter.write(filePathPrefix, batches, true);
+                }
+            }
+
+            List<SplitSegment<C>> plan = splitUtils.planSegments(condition);
+            log.info("[ManagerDataProcess] Split completed, segmentCount={}", plan.size());
+            if (plan.size() <= 1) {
+                List<C> conditionList = plan.stream().map(SplitSegment::getCondition).collect(Collectors.toList());
+                try (ExportBatchIterator<R> batches = openSegmentBatches(service, conditionList, downloadEnum)) {
+                    return fileWriter.write(filePathPrefix, batches, true);
+                }
+            }
+            long planRows = plan.stream().mapToLong(SplitSegment::getRowCount).sum();
+            long partRows = sharded ? shardedExportWriter.getRowsPerPart() : exportCheckpointStore.getRowsPerPart();
+            checkpoint = newCheckpoint(downloadLogPO.getId(), signature, sharded,
+                    ShardedExportWriter.partition(plan, partRows));
+            exportCheckpointStore.save(checkpoint);
+            log.info("[ManagerDataProcess] {} mode, rows={}, segmentCount={}, partCount={}",
+                    sharded ? "Sharded" : "Stitched", planRows, plan.size(), checkpoint.getParts().size());
+        }
+
+        List<List<C>> parts = new ArrayList<>(checkpoint.getParts().size());
+        List<String> completedParts = new ArrayList<>(checkpoint.getParts().size());
+        for (ExportCheckpointDTO.Part part : checkpoint.getParts()) {
+            parts.add(part.getConditions().stream().map(service::convertedDownloadCondition).collect(Collectors.toList()));
+            completedParts.add(part.getFilePath());
+        }
+
+        ExportCheckpointDTO progress = checkpoint;
+        BiConsumer<Integer, String> onPartDone = (index, partPath) -> exportCheckpointStore.markPartDone(progress, index, partPath);
+        Function<List<C>, ExportBatchIterator<R>> batchOpener = part -> openSegmentBatches(service, part, downloadEnum);
+        List<String> partPaths;
+        try {
+            if (checkpoint.isSharded()) {
+                partPaths = shardedExportWriter.writeParts(filePathPrefix, parts, completedParts, batchOpener,
+                        (prefix, batches) -> fileWriter.write(prefix, batches, true), onPartDone);
+            } else {
+                partPaths = writePartsInOrder(filePathPrefix, parts, completedParts, batchOpener, fileWriter, onPartDone);
+            }
+        } catch (RuntimeException e) {
+            if (exportCheckpointStore.isEnabled()) {
+                log.warn("[ManagerDataProcess] Export failed, finished parts kept for retry, taskId={}", downloadLogPO.getId());
+            } else {
+                exportCheckpointStore.discard(checkpoint);
+            }
+            throw e;
+        }
+
+        String filePath = checkpoint.isSharded()
+                ? ExportFileUtils.zip(filePathPrefix + "-" + System.currentTimeMillis() + ".zip", partPaths,
+                        format.isDelimited() && !format.isGzip())
+                : ExportFileUtils.concat(filePathPrefix + "-" + System.currentTimeMillis() + "." + format.getExtension(), partPaths);
+        exportCheckpointStore.discard(checkpoint);
+        return filePath;
+    }
+
+    /** Writes pending parts one after another; only the first part carries the header. */
+    private <C, R> List<String> writePartsInOrder(String filePathPrefix,
+                                                  List<List<C>> parts,
+                                                  List<String> completedParts,
+                                                  Function<List<C>, ExportBatchIterator<R>> batchOpener,
+                                                  PartWriter<R> fileWriter,
+                                                  BiConsumer<Integer, String> onPartDone) {
+        List<String> partPaths = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            String partPath = completedParts.get(i);
+            if (partPath == null) {
+                try (ExportBatchIterator<R> batches = batchOpener.apply(parts.get(i))) {
+                    partPath = fileWriter.write(ShardedExportWriter.partPrefix(filePathPrefix, i), batches, i == 0);
+                }
+                onPartDone.accept(i, partPath);
+            }
+            partPaths.add(partPath);
+        }
+        return partPaths;
+    }
+
+    private static <C> ExportCheckpointDTO newCheckpoint(Long taskId, String signature, boolean sharded,
+                                                         List<List<SplitSegment<C>>> partition) {
+        List<ExportCheckpointDTO.Part> parts = new ArrayList<>(partition.size());
+        for (List<SplitSegment<C>> segments : partition) {
+            ExportCheckpointDTO.Part part = new ExportCheckpointDTO.Part();
+            part.setIndex(parts.size());
+            part.setConditions(segments.stream().map(segment -> JsonUtil.toJson(segment.getCondition())).collect(Collectors.toList()));
+            part.setRowCount(segments.stream().mapToLong(SplitSegment::getRowCount).sum());
+            parts.add(part);
+        }
+        ExportCheckpointDTO checkpoint = new ExportCheckpointDTO();
+        checkpoint.setTaskId(taskId);
+        checkpoint.setSignature(signature);
+        checkpoint.setSharded(sharded);
+        checkpoint.setCreateTimeMillis(System.currentTimeMillis());
+        checkpoint.setParts(parts);
+        return checkpoint;
+    }
+
+    /**
+     * Identifies what a checkpoint was planned for; a task whose setup differs must not reuse it. SHA-256 over
+     * the length-prefixed fields, so neither a hash collision nor shifting text between fields matches.
+     */
+    private static String checkpointSignature(DownloadLogPO downloadLogPO) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (String field : new String[]{downloadLogPO.getDownloadType(), downloadLogPO.getDownloadCondition(),
+                downloadLogPO.getTitles(), downloadLogPO.getExportFormat()}) {
+            byte[] bytes = field == null ? new byte[0] : field.getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(field == null ? -1 : bytes.length).array());
+            digest.update(bytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static <C> Iterator<C> conditionsOf(Iterator<SplitSegment<C>> plan) {
+        return new Iterator<C>() {
+            @Override
+            public boolean hasNext() {
+                return plan.hasNext();
+            }
+
+            @Override
+            public C next() {
+                return plan.next().getCondition();
+            }
+        };
+    }
+
+    /** The service's splitter, wired to the histogram query, the service's read mode and the shared planning pool. */
+    private <C extends PageRequest, R> ParamSplitUtils<C> initSplitUtils(QueryExportDataService<C, R> service, C condition) {
+        ParamSplitUtils<C> splitUtils = service.initSplitUtils(condition);
+        Assert.notNull(splitUtils, "ParamSplitUtils cannot be null");
+        return splitUtils
+                .withHistogram(service::queryRowHistogram)
+                .withStreamingReads(service.supportsStreaming())
+                .withForkJoin(exportFetchExecutor.getSplitPool());
+    }
+
+    /**
+     * Reads a list of segments in order, either streamed row by row or fetched ahead of the writer.
+     */
+    private <C extends PageRequest, R> ExportBatchIterator<R> openSegmentBatches(QueryExportDataService<C, R> service,
+                                                                                List<C> conditionList,
+                                                                                DownloadRefServiceEnum downloadEnum) {
+        return openSegmentBatches(service, conditionList.iterator(), conditionList.size(), downloadEnum);
+    }
+
+    /**
+     * Reads segments in the order {@code conditions} yields them; {@code segmentCount} is the known count,
+     * or {@link Integer#MAX_VALUE} for a lazily planned export.
+     */
+    private <C extends PageRequest, R> ExportBatchIterator<R> openSegmentBatches(QueryExportDataService<C, R> service,
+                                                                                Iterator<C> conditions,
+                                                                                int segmentCount,
+                                                                                DownloadRefServiceEnum downloadEnum) {
+        if (service.supportsStreaming()) {
+            log.info("[ManagerDataProcess] Streaming mode, chunkRows={}", STREAM_CHUNK_ROWS);
+            return new StreamingBatchIterator<>(conditions, service::streamExportData,
+                    STREAM_CHUNK_ROWS, STREAM_BUFFERED_CHUNKS, exportFetchExecutor.forStreaming());
+        }
+
+        int fetchWindow = resolveFetchWindow(downloadEnum, segmentCount);
+        Executor fetchExecutor = fetchWindow > 0 ? exportFetchExecutor.forType(downloadEnum) : null;
+        return new SegmentPrefetcher<>(conditions,
+                segment -> fetchLatencyTracker.time(() -> service.queryExportData(segment)), fetchExecutor, fetchWindow);
+    }
+
+    /**
+     * Segments the export may hold at once, including the one being written: enough to keep every
+     * permitted fetch of this type busy while a batch is written, and zero for single-segment exports
+     * where there is nothing to overlap.
+     */
+    private int resolveFetchWindow(DownloadRefServiceEnum downloadEnum, int segmentCount) {
+        if (segmentCount <= 1) {
+            return 0;
+        }
+        int parallelism = downloadEnum.getFetchParallelism() > 1 ? downloadEnum.getFetchParallelism() + 1 : 0;
+        return Math.max(downloadEnum.getPrefetchDepth(), parallelism);
+    }
+
+    /** Writes one export file, or one part of it, and returns the file path. */
+    @FunctionalInterface
+    private interface PartWriter<R> {
+        String write(String filePathPrefix, ExportBatchIterator<R> batches, boolean withHeader);
+    }
 }
@@ -1,9 +1,8 @@
 package com.seeho.downloadcenter.domain.dotask.process;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.alibaba.excel.util.StringUtils;
 import com.seeho.downloadcenter.base.common.PageRequest;
-import com.seeho.downloadcenter.domain.utils.JsonUtil;
+import com.seeho.downloadcenter.domain.utils.FieldAccessors;
 import com.seeho.downloadcenter.domain.utils.LocalDateTimeUtils;
 import com.seeho.downloadcenter.domain.utils.ParamSplitUtils;
 import com.seeho.downloadcenter.base.model.DownloadColumnDTO;
@@ -11,12 +10,12 @@ import com.seeho.downloadcenter.base.model.DownloadColumnDTO;
 import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public interface QueryExportDataService<C extends PageRequest, R> {
 
@@ -26,90 +25,118 @@ public interface QueryExportDataService<C extends PageRequest, R> {
     /** Counts the total number of rows for the export. */
     Long queryTotalCount(C condition);
 
-    /** Fetches a page of export data. */
+    /**
+     * Rough row count used to route a task before it runs (fast or bulk lane). Defaults to
+     * {@link #queryTotalCount}; override with something cheaper, such as table statistics, when counting
+     * is expensive. {@code null} means unknown.
+     */
+    default Long estimateTotalCount(C condition) {
+        return queryTotalCount(condition);
+    }
+
+    /**
+     * Fetches a page of export data, honoring {@link PageRequest#getPageSize()} and
+     * {@link PageRequest#getPageIndex()}. Hot-spot segments are read as several pages of one condition,
+     * so the order within a page must be stable (for example {@code ORDER BY create_time, id}).
+     */
     List<R> queryExportData(C condition);
 
+    /**
+     * Whether rows should be read through {@link #streamExportData} instead of a materialized page.
+     * Streaming implementations typically drain a MyBatis {@code Cursor} or {@code ResultHandler}
+     * configured with a JDBC fetch size, so the export never holds a whole segment in memory.
+     */
+    default boolean supportsStreaming() {
+        return false;
+    }
+
+    /**
+     * Pushes the rows of one segment into {@code sink} as they are read, in export order.
+     * The default adapts {@link #queryExportData}, so List-returning implementations keep working.
+     */
+    default void streamExportData(C condition, Consumer<R> sink) {
+        List<R> rows = queryExportData(condition);
+        if (rows != null) {
+            rows.forEach(sink);
+        }
+    }
+
+    /**
+     * Row counts of the condition's time range grouped per {@code bucketUnit} ({@code DAYS}, {@code HOURS} or
+     * {@code MINUTES}) and keyed by bucket start, e.g. one
+     * {@code GROUP BY DATE_FORMAT(create_time, '%Y-%m-%d %H:00:00')} query. Lets the split planner pack
+     * segments from a single query; {@code null} falls back to COUNT bisection.
+     */
+    default Map<LocalDateTime, Long> queryRowHistogram(C condition, ChronoUnit bucketUnit) {
+        return null;
+    }
+
     /** Initializes the helper that splits large parameter sets. */
     ParamSplitUtils<C> initSplitUtils(C condition);
 
     /** Provides the DTO class used by the Excel writer. */
     Class<R> getExportDataClass();
 
-    /** Maps field identifiers to DTO getters for dynamic exports. */
-    Map<String, Function<R, Object>> getFieldMapper();
+    /**
+     * Hand-written readers for dynamic exports, keyed by field identifier.
+     * Every getter of {@link #getExportDataClass()} is already readable through {@link #fieldAccessors()};
+     * entries here override a generated reader or add a computed field.
+     */
+    default Map<String, Function<R, Object>> getFieldMapper() {
+        return Collections.emptyMap();
+    }
 
-    /** Parses client provided column definitions and builds an EasyExcel head. */
-    default List<List<String>> parseDynamicHead(String titlesJson) {
-        if (StringUtils.isBlank(titlesJson)) {
-            return null;
-        }
+    /** Generated readers of the export DTO merged with the overrides from {@link #getFieldMapper()}. */
+    default FieldAccessors<R> fieldAccessors() {
+        return FieldAccessors.forClass(getExportDataClass()).withOverrides(getFieldMapper());
+    }
 
-        try {
-            List<DownloadColumnDTO> columns = JsonUtil.fromJson(
-                    titlesJson,
-                    new TypeReference<List<DownloadColumnDTO>>() {
-                    }
-            );
+    /**
+     * Whether the export can be read with keyset (seek) pagination over a monotonically increasing key,
+     * such as an auto-increment id. When enabled, no count queries are issued and no split plan is built.
+     */
+    default boolean supportsKeysetPaging() {
+        return false;
+    }
 
-            if (columns == null || columns.isEmpty()) {
-                return null;
-            }
+    /**
+     * Fetches the next page of rows ordered by ascending key, starting strictly after {@code lastKey}
+     * ({@code null} for the first page). The page size is taken from {@link PageRequest#getPageSize()};
+     * an empty page ends the export.
+     */
+    default List<R> queryExportDataAfter(C condition, Long lastKey) {
+        throw new UnsupportedOperationException("Keyset paging is not supported by " + getClass().getSimpleName());
+    }
 
-            return columns.stream()
-                    .filter(col -> Boolean.TRUE.equals(col.getEnable()))
-                    .map(col -> Collections.singletonList(col.getHeader()))
-                    .collect(Collectors.toList());
+    /** Returns the keyset key of a row, used as the seek position of the following page. */
+    default Long getKeysetKey(R row) {
+        throw new UnsupportedOperationException("Keyset paging is not supported by " + getClass().getSimpleName());
+    }
 
-        } catch (Exception e) {
-            System.err.println("[QueryExportDataService] Failed to parse dynamic head from titlesJson: " + e.getMessage());
-            return null;
-        }
+    /**
+     * Returns the compiled, cached column plan for the client's titles, or {@code null} when the
+     * export should use the annotation head of {@link #getExportDataClass()}.
+     */
+    default ColumnPlan<R> resolveColumnPlan(String titlesJson) {
+        return ColumnPlan.of(this, titlesJson);
+    }
+
+    /** Parses client provided column definitions and builds an EasyExcel head. */
+    default List<List<String>> parseDynamicHead(String titlesJson) {
+        ColumnPlan<R> plan = resolveColumnPlan(titlesJson);
+        return plan == null ? null : plan.getHead();
     }
 
     /** Builds a row mapper based on the provided column definition. */
     default Function<R, List<Object>> buildRowMapper(String titlesJson) {
-        if (StringUtils.isBlank(titlesJson)) {
-            return null;
-        }
-
-        try {
-            List<DownloadColumnDTO> columns = JsonUtil.fromJson(
-                    titlesJson,
-                    new TypeReference<List<DownloadColumnDTO>>() {
-                    }
-            );
-
-            if (columns == null || columns.isEmpty()) {
-                return null;
-            }
-
-            List<DownloadColumnDTO> enabledColumns = columns.stream()
-                    .filter(col -> Boolean.TRUE.equals(col.getEnable()))
-                    .collect(Collectors.toList());
-
-            Map<String, Function<R, Object>> fieldMapper = getFieldMapper();
-
-            return (R dto) -> {
-                List<Object> row = new ArrayList<>(enabledColumns.size());
-                for (DownloadColumnDTO col : enabledColumns) {
-                    Function<R, Object> getter = fieldMapper.get(col.getField());
-                    if (getter != null) {
-                        Object value = getter.apply(dto);
-                        row.add(formatValue(value, col));
-                    } else {
-                        row.add(null);
-                    }
-                }
-                return row;
-            };
-
-        } catch (Exception e) {
-            System.err.println("[QueryExportDataService] Failed to build row mapper from titlesJson: " + e.getMessage());
-            return null;
-        }
+        ColumnPlan<R> plan = resolveColumnPlan(titlesJson);
+        return plan == null ? null : plan.rowMapper();
     }
 
-    /** Applies optional date/number formatting rules defined by the column. */
+    /**
+     * Applies optional date/number formatting rules defined by the column.
+     * Column plans use prebuilt formatters with the same rules and only call this when it is overridden.
+     */
     default Object formatValue(Object value, DownloadColumnDTO col) {
         if (value == null) {
             return null;
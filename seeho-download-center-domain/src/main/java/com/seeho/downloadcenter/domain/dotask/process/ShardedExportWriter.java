@@ -0,0 +1,207 @@
+package com.seeho.downloadcenter.domain.dotask.process;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import com.seeho.downloadcenter.domain.utils.ExportBatchIterator;
+import com.seeho.downloadcenter.domain.utils.SplitSegment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Writes very large exports as several part files in parallel; the caller bundles them into one zip.
+ * The split plan is cut into contiguous shards of roughly {@code rows-per-part} rows; every shard is
+ * written by its own file writer on the shared shard pool, so encoding scales with the worker cores
+ * while segment queries stay capped by {@link ExportFetchExecutor}.
+ */
+@Slf4j
+@Component
+public class ShardedExportWriter implements InitializingBean, DisposableBean {
+
+    @Value("${download.export.shard.enabled:false}")
+    private boolean enabled;
+
+    @Value("${download.export.shard.rows-per-part:1000000}")
+    private long rowsPerPart;
+
+    /** Part writer threads; zero or less means one per available core. */
+    @Value("${download.export.shard.writer-threads:0}")
+    private int writerThreads;
+
+    private ThreadPoolExecutor writerPool;
+
+    @Override
+    public void afterPropertiesSet() {
+        int threads = writerThreads > 0 ? writerThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.writerPool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "Export-Shard-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.writerPool.allowCoreThreadTimeOut(true);
+        log.info("[ShardedExportWriter] Shard writer pool started, enabled={}, threads={}, rowsPerPart={}",
+                enabled, threads, rowsPerPart);
+    }
+
+    /** Whether an export of {@code totalRows} rows should be written as multiple parts. */
+    public boolean shouldShard(long totalRows) {
+        return enabled && totalRows > rowsPerPart;
+    }
+
+    public long getRowsPerPart() {
+        return rowsPerPart;
+    }
+
+    /**
+     * Cuts the plan into contiguous parts, closing a part before the segment that would take it past
+     * {@code partRows}. A single segment larger than the limit becomes a part of its own.
+     */
+    public static <C> List<List<SplitSegment<C>>> partition(List<SplitSegment<C>> plan, long partRows) {
+        List<List<SplitSegment<C>>> parts = new ArrayList<>();
+        List<SplitSegment<C>> current = new ArrayList<>();
+        long currentRows = 0;
+        for (SplitSegment<C> segment : plan) {
+            if (!current.isEmpty() && currentRows + segment.getRowCount() > partRows) {
+                parts.add(current);
+                current = new ArrayList<>();
+                currentRows = 0;
+            }
+            current.add(segment);
+            currentRows += segment.getRowCount();
+        }
+        if (!current.isEmpty()) {
+            parts.add(current);
+        }
+        return parts;
+    }
+
+    /** File path prefix of part {@code index} (zero based). */
+    public static String partPrefix(String filePathPrefix, int index) {
+        return String.format("%s-part-%03d", filePathPrefix, index + 1);
+    }
+
+    /**
+     * Writes every part that has no file yet in parallel, each to its own file, and returns the file paths
+     * of all parts in order. Each finished part is reported to {@code onPartDone} as soon as it is complete.
+     * If any part fails the others stop at their next batch and the first failure is rethrown; parts that
+     * did finish stay on disk, so the caller can keep them for a retry or delete them.
+     *
+     * @param completedParts file of each part already written earlier, {@code null} for pending parts
+     * @param batchOpener    opens the batch source of one part
+     * @param partWriter     writes one part from a file path prefix and returns the file path
+     */
+    public <C, R> List<String> writeParts(String filePathPrefix,
+                                          List<List<C>> parts,
+                                          List<String> completedParts,
+                                          Function<List<C>, ExportBatchIterator<R>> batchOpener,
+                                          BiFunction<String, ExportBatchIterator<R>, String> partWriter,
+                                          BiConsumer<Integer, String> onPartDone) {
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        List<CompletableFuture<String>> futures = new ArrayList<>(parts.size());
+        int pending = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            if (completedParts.get(i) != null) {
+                futures.add(CompletableFuture.completedFuture(completedParts.get(i)));
+                continue;
+            }
+            pending++;
+            int index = i;
+            List<C> part = parts.get(i);
+            CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+                String partPath;
+                try (ExportBatchIterator<R> batches = new AbortableBatches<>(batchOpener.apply(part), aborted)) {
+                    partPath = partWriter.apply(partPrefix(filePathPrefix, index), batches);
+                }
+                onPartDone.accept(index, partPath);
+                return partPath;
+            }, writerPool);
+            futures.add(future.whenComplete((path, e) -> {
+                if (e != null) {
+                    // The first failure is the cause; later ones are siblings stopping because of it.
+                    firstFailure.compareAndSet(null, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    aborted.set(true);
+                }
+            }));
+        }
+        log.info("[ShardedExportWriter] Writing {} of {} parts, filePathPrefix={}", pending, parts.size(), filePathPrefix);
+
+        // Wait for every part, failed or not, so no writer is still touching its file afterwards.
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((v, e) -> null).join();
+
+        Throwable failure = firstFailure.get();
+        if (failure != null) {
+            log.error("[ShardedExportWriter] Sharded export failed, filePathPrefix={}", filePathPrefix, failure);
+            if (failure instanceof BusinessException) {
+                throw (BusinessException) failure;
+            }
+            throw new BusinessException("Sharded export failed: " + failure.getMessage(), failure);
+        }
+
+        List<String> partPaths = new ArrayList<>(futures.size());
+        for (CompletableFuture<String> future : futures) {
+            partPaths.add(future.join());
+        }
+        return partPaths;
+    }
+
+    @Override
+    public void destroy() {
+        log.info("[ShardedExportWriter] Shutting down shard writer pool...");
+        writerPool.shutdownNow();
+    }
+
+    /** Stops a part at its next batch once a sibling part has failed. */
+    private static final class AbortableBatches<R> implements ExportBatchIterator<R> {
+
+        private final ExportBatchIterator<R> delegate;
+        private final AtomicBoolean aborted;
+
+        private AbortableBatches(ExportBatchIterator<R> delegate, AtomicBoolean aborted) {
+            this.delegate = delegate;
+            this.aborted = aborted;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (aborted.get()) {
+                throw new CancellationException("Another part of the export failed");
+            }
+            return delegate.hasNext();
+        }
+
+        @Override
+        public List<R> next() {
+            return delegate.next();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.seeho.downloadcenter.domain.dotask.process;
+
+import com.seeho.downloadcenter.base.common.PageRequest;
+import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
+import com.seeho.downloadcenter.domain.utils.SpringContextHolder;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimates how many rows a queued task will export, so the dispatcher can route it before it runs.
+ */
+@Slf4j
+@Component
+public class TaskSizeEstimator {
+
+    /**
+     * Returns the service's row estimate for the task's condition, or {@code null} when it cannot be
+     * estimated; callers treat unknown sizes as large.
+     */
+    public Long estimateRows(DownloadLogPO task) {
+        try {
+            DownloadRefServiceEnum refServiceEnum = DownloadRefServiceEnum.matchDownloadType(task.getDownloadType());
+            QueryExportDataService<?, ?> service = (QueryExportDataService<?, ?>) SpringContextHolder.getBean(
+                    Class.forName(refServiceEnum.getContextBeanName()));
+            return estimate(service, task.getDownloadCondition());
+        } catch (Exception e) {
+            log.warn("[TaskSizeEstimator] Size estimate failed, taskId={}", task.getId(), e);
+            return null;
+        }
+    }
+
+    private static <C extends PageRequest> Long estimate(QueryExportDataService<C, ?> service, String downloadCondition) {
+        return service.estimateTotalCount(service.convertedDownloadCondition(downloadCondition));
+    }
+}
@@ -0,0 +1,212 @@
+package com.seeho.downloadcenter.domain.dotask.process.consumer;
+
+import com.seeho.downloadcenter.domain.dotask.process.DownloadTaskHandler;
+import com.seeho.downloadcenter.domain.dotask.sendtask.impl.TaskBulkhead;
+import com.seeho.downloadcenter.domain.downloadlog.DownloadLogMangerService;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumer for {@code download.task.queue.mode=db}: claims batches of available tasks from
+ * {@code download_log} and runs them on a fixed worker pool, so any number of nodes can share the table
+ * without a broker. A poller claims only as many rows as there are free workers. When nothing is
+ * claimable it backs off exponentially from {@code min-poll-ms} to {@code max-poll-ms}, with jitter so
+ * idle nodes do not poll in lockstep, and drops back to the minimum as soon as a claim succeeds.
+ * Claims of a node that dies before starting its tasks expire after {@code claim-timeout-seconds}.
+ * Types at their {@link TaskBulkhead} limit are left out of the claim; a claimed task whose type filled up
+ * within the same batch is handed back unclaimed instead of holding a worker.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "download.task.queue.mode", havingValue = "db")
+public class DbTaskConsumer implements InitializingBean, DisposableBean {
+
+    @Resource
+    private DownloadLogMangerService downloadLogMangerService;
+
+    @Resource
+    private DownloadTaskHandler downloadTaskHandler;
+
+    @Resource
+    private TaskBulkhead taskBulkhead;
+
+    @Value("${download.task.consumer.thread-count:3}")
+    private int threadCount;
+
+    @Value("${download.task.queue.db.batch-size:0}")
+    private int batchSize;
+
+    @Value("${download.task.queue.db.min-poll-ms:200}")
+    private long minPollMillis;
+
+    @Value("${download.task.queue.db.max-poll-ms:5000}")
+    private long maxPollMillis;
+
+    @Value("${download.task.queue.db.claim-timeout-seconds:300}")
+    private long claimTimeoutSeconds;
+
+    /** {@code skip-locked} (MySQL 8, H2) or {@code conditional-update} (any database). */
+    @Value("${download.task.queue.db.claim-strategy:skip-locked}")
+    private String claimStrategy;
+
+    @Value("${download.task.queue.db.node-id:}")
+    private String nodeId;
+
+    private ExecutorService pollerExecutor;
+
+    private ExecutorService workerExecutor;
+
+    /** Free workers; a claim never takes more rows than this. */
+    private Semaphore freeWorkers;
+
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (nodeId == null || nodeId.isBlank()) {
+            // "pid@hostname", unique per JVM on a host.
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        if (batchSize <= 0) {
+            batchSize = threadCount;
+        }
+        this.freeWorkers = new Semaphore(threadCount);
+        this.workerExecutor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), namedThreads("Db-TaskWorker-"));
+        this.pollerExecutor = Executors.newSingleThreadExecutor(namedThreads("Db-TaskPoller-"));
+        pollerExecutor.submit(this::pollLoop);
+        log.info("[DbTaskConsumer] Consumer started, nodeId={}, workers={}, batchSize={}, claimStrategy={}, pollMillis=[{}, {}]",
+                nodeId, threadCount, batchSize, claimStrategy, minPollMillis, maxPollMillis);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(false);
+            return thread;
+        };
+    }
+
+    private void pollLoop() {
+        boolean skipLocked = !"conditional-update".equalsIgnoreCase(claimStrategy);
+        long backoffMillis = minPollMillis;
+        while (running) {
+            try {
+                freeWorkers.acquire();
+                int slots = 1;
+                while (slots < batchSize && freeWorkers.tryAcquire()) {
+                    slots++;
+                }
+
+                List<DownloadLogPO> tasks;
+                try {
+                    String claimToken = nodeId + "#" + claimSequence.incrementAndGet();
+                    LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(claimTimeoutSeconds);
+                    tasks = downloadLogMangerService.claimPendingTasks(claimToken, slots, staleBefore,
+                            taskBulkhead.saturatedTypes(), skipLocked);
+                } catch (Exception e) {
+                    freeWorkers.release(slots);
+                    throw e;
+                }
+                freeWorkers.release(slots - tasks.size());
+
+                int started = 0;
+                for (DownloadLogPO task : tasks) {
+                    if (taskBulkhead.tryAcquire(task.getDownloadType())) {
+                        workerExecutor.execute(() -> runTask(task));
+                        started++;
+                    } else {
+                        defer(task);
+                    }
+                }
+                if (started == 0) {
+                    sleepWithJitter(backoffMillis);
+                    backoffMillis = Math.min(backoffMillis * 2, maxPollMillis);
+                } else {
+                    log.info("[DbTaskConsumer] Claimed tasks, count={}, requested={}", tasks.size(), slots);
+                    backoffMillis = minPollMillis;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("[DbTaskConsumer] Claim failed, retrying in {}ms", backoffMillis, e);
+                try {
+                    sleepWithJitter(backoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, maxPollMillis);
+            }
+        }
+        log.info("[DbTaskConsumer] Poller stopped, nodeId={}", nodeId);
+    }
+
+    /** Hands a task whose type is at its limit back to the table for a later claim. */
+    private void defer(DownloadLogPO task) {
+        freeWorkers.release();
+        taskBulkhead.recordDeferred(task.getDownloadType());
+        try {
+            downloadLogMangerService.releaseClaim(task.getId(), task.getClaimOwner());
+        } catch (Exception e) {
+            // The claim expires after claim-timeout-seconds.
+            log.warn("[DbTaskConsumer] Releasing deferred claim failed, taskId={}", task.getId(), e);
+        }
+        log.info("[DbTaskConsumer] Task type at its concurrency limit, deferred, taskId={}, downloadType={}",
+                task.getId(), task.getDownloadType());
+    }
+
+    private void runTask(DownloadLogPO task) {
+        try {
+            log.info("[DbTaskConsumer] Running claimed task, taskId={}, claimOwner={}", task.getId(), task.getClaimOwner());
+            downloadTaskHandler.handle(task);
+        } catch (Exception e) {
+            log.error("[DbTaskConsumer] Task failed, taskId={}", task.getId(), e);
+        } finally {
+            taskBulkhead.release(task.getDownloadType());
+            freeWorkers.release();
+        }
+    }
+
+    /** Sleeps 80-120% of {@code millis}. */
+    private static void sleepWithJitter(long millis) throws InterruptedException {
+        Thread.sleep(millis * (80 + ThreadLocalRandom.current().nextInt(41)) / 100);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        log.info("[DbTaskConsumer] Shutting down consumer...");
+        running = false;
+        pollerExecutor.shutdownNow();
+        workerExecutor.shutdown();
+        try {
+            if (!workerExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("[DbTaskConsumer] Workers did not terminate in time, forcing shutdown...");
+                workerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workerExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Tasks claimed but not started become claimable by other nodes right away.
+        Boolean released = downloadLogMangerService.releaseClaims(nodeId + "#");
+        log.info("[DbTaskConsumer] Consumer shutdown completed, claimsReleased={}", released);
+    }
+}
@@ -1,27 +1,63 @@
 package com.seeho.downloadcenter.domain.dotask.process.consumer;
 
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import com.seeho.downloadcenter.base.mq.MQConsumerGroupConstants;
+import com.seeho.downloadcenter.base.mq.MQTopicConstants;
 import com.seeho.downloadcenter.domain.dotask.process.DownloadTaskHandler;
+import com.seeho.downloadcenter.domain.dotask.sendtask.impl.TaskBulkhead;
+import com.seeho.downloadcenter.domain.dotask.sendtask.transport.MQTransport;
+import com.seeho.downloadcenter.domain.dotask.sendtask.transport.TaskMessage;
+import com.seeho.downloadcenter.domain.utils.JsonUtil;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 /**
- * Placeholder MQ consumer that delegates tasks to {@link DownloadTaskHandler}.
- * RocketMQ integration is currently disabled, the bean stays for future wiring.
+ * MQ consumer that delegates tasks to {@link DownloadTaskHandler}. Subscribes to the task topic with
+ * {@code consumer-parallelism} concurrent deliveries; a message is acked only once the handler returns,
+ * so a node that dies mid-task leaves it to be redelivered. A message whose task type is at its
+ * {@link TaskBulkhead} limit is thrown back for redelivery instead of holding a delivery thread.
  */
 @Slf4j
 @Component
-// @ConditionalOnProperty(name = "download.task.queue.mode", havingValue = "mq", matchIfMissing = true)
-public class DownloadTaskConsumer {
+@ConditionalOnProperty(name = "download.task.queue.mode", havingValue = "mq")
+public class DownloadTaskConsumer implements InitializingBean {
 
     @Resource
     private DownloadTaskHandler downloadTaskHandler;
 
-    // TODO: RocketMQ integration removed - need to implement MQ consumer if needed
-    public void onMessage(Object message) {
-        log.info("[DownloadTaskConsumer] Received MQ message message={}", message);
-        //todo
-        //downloadTaskHandler.handle(payload);
+    @Resource
+    private MQTransport mqTransport;
+
+    @Resource
+    private TaskBulkhead taskBulkhead;
+
+    @Value("${download.task.queue.mq.consumer-parallelism:4}")
+    private int parallelism;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        mqTransport.subscribe(MQTopicConstants.DOWNLOAD_TASK_TOPIC, MQConsumerGroupConstants.DOWNLOAD_LOG_TASK_GROUP,
+                parallelism, this::onMessage);
+    }
 
+    /** Throws when the handler does or the task type is at its limit, leaving the message unacked for redelivery. */
+    public void onMessage(TaskMessage message) {
+        log.info("[DownloadTaskConsumer] Received MQ message, key={}, reconsumeTimes={}", message.getKey(),
+                message.getReconsumeTimes());
+        DownloadLogPO payload = JsonUtil.fromJson(message.getBody(), DownloadLogPO.class);
+        if (!taskBulkhead.tryAcquire(payload.getDownloadType())) {
+            taskBulkhead.recordDeferred(payload.getDownloadType());
+            throw new BusinessException("Task type at its concurrency limit, deferring: " + payload.getDownloadType());
+        }
+        try {
+            downloadTaskHandler.handle(payload);
+        } finally {
+            taskBulkhead.release(payload.getDownloadType());
+        }
     }
 }
@@ -1,8 +1,12 @@
 package com.seeho.downloadcenter.domain.dotask.process.consumer;
 
 import com.seeho.downloadcenter.base.exception.BusinessException;
+import com.seeho.downloadcenter.base.model.ConsumerPoolDTO;
 import com.seeho.downloadcenter.domain.dotask.process.DownloadTaskHandler;
+import com.seeho.downloadcenter.domain.dotask.process.FetchLatencyTracker;
+import com.seeho.downloadcenter.domain.dotask.sendtask.impl.FairTaskQueue;
 import com.seeho.downloadcenter.domain.dotask.sendtask.impl.InMemoryTaskQueueService;
+import com.seeho.downloadcenter.domain.utils.MessageKeyUtils;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -10,78 +14,211 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * In-memory task consumer used for development profiles.
- * Pulls tasks from a blocking queue and delegates them to {@link DownloadTaskHandler}.
+ * Serves the fast and bulk lanes of {@link InMemoryTaskQueueService} separately and delegates tasks to
+ * {@link DownloadTaskHandler}. An idle lane steals from the other one: bulk takes small tasks freely,
+ * while fast takes bulk tasks only as long as one fast slot stays free, so a small export never waits
+ * behind a bulk backlog. Polled tasks hold a permit of their type's
+ * {@link com.seeho.downloadcenter.domain.dotask.sendtask.impl.TaskBulkhead}, released once handled.
+ * <p>
+ * In {@code platform} mode each slot is a pooled worker thread. In {@code virtual} mode (Java 21+) one
+ * dispatcher per lane starts a virtual thread for every task, bounded by a semaphore, so exports blocked
+ * on JDBC or file I/O do not hold a platform thread.
+ * <p>
+ * In platform mode the bulk worker count is elastic between {@code autoscale.min-threads} and
+ * {@code autoscale.max-threads}: it grows while tasks wait longer than {@code target-wait-ms} with every
+ * worker busy, shrinks one at a time once the queues stay empty, and sheds workers instead of growing
+ * while export fetches average slower than {@code max-fetch-latency-ms}. Bounds can be changed at runtime
+ * through {@link #adjustPool(Integer, Integer)}.
  */
 @Slf4j
 @Component
 @ConditionalOnProperty(name = "download.task.queue.mode", havingValue = "memory")
 public class InMemoryTaskConsumer implements InitializingBean, DisposableBean {
 
+    /** How long a worker waits on its own lane before checking the other one. */
+    private static final long HOME_POLL_MILLIS = 200L;
+
+    private static final String VIRTUAL_MODE = "virtual";
+
     @Resource
     private InMemoryTaskQueueService queueService;
 
     @Resource
     private DownloadTaskHandler downloadTaskHandler;
 
-    private ExecutorService consumerExecutor;
+    @Resource
+    private FetchLatencyTracker fetchLatencyTracker;
+
+    private ThreadPoolExecutor consumerExecutor;
 
+    /** Runs the tasks in virtual mode; {@code null} in platform mode. */
+    private ExecutorService taskExecutor;
+
+    @Value("${download.task.consumer.mode:platform}")
+    private String consumerMode;
+
+    /** Bulk lane workers at startup. */
     @Value("${download.task.consumer.thread-count:3}")
     private int consumerThreadCount;
 
+    @Value("${download.task.consumer.autoscale.enabled:true}")
+    private boolean autoscaleEnabled;
+
+    @Value("${download.task.consumer.autoscale.min-threads:1}")
+    private volatile int minWorkers;
+
+    @Value("${download.task.consumer.autoscale.max-threads:8}")
+    private volatile int maxWorkers;
+
+    @Value("${download.task.consumer.autoscale.target-wait-ms:30000}")
+    private long targetWaitMillis;
+
+    @Value("${download.task.consumer.autoscale.max-fetch-latency-ms:2000}")
+    private long maxFetchLatencyMillis;
+
+    /** Consecutive empty-queue checks before a bulk worker is retired. */
+    @Value("${download.task.consumer.autoscale.idle-ticks:6}")
+    private int idleTicks;
+
+    @Value("${download.task.consumer.fast-thread-count:2}")
+    private int fastThreadCount;
+
+    /** Bulk lane tasks running at once in virtual mode. */
+    @Value("${download.task.consumer.virtual.max-concurrency:16}")
+    private int virtualMaxConcurrency;
+
+    @Value("${download.task.consumer.virtual.fast-max-concurrency:8}")
+    private int virtualFastMaxConcurrency;
+
+    /** Fast lane slots in the active mode; one of them is kept free of bulk work. */
+    private int fastSlots;
+
+    /** Fast slots currently running a task stolen from the bulk lane. */
+    private final AtomicInteger fastWorkersOnBulk = new AtomicInteger();
+
+    /** Bulk workers wanted; workers above it retire before their next poll. */
+    private volatile int targetWorkers;
+
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+
+    /** Consecutive autoscale checks that found both queues empty; scheduler thread only. */
+    private int idleTickCount;
+
     private volatile boolean running = true;
 
     @Override
     public void afterPropertiesSet() throws Exception {
-        log.info("[InMemoryTaskConsumer] Initializing consumer with {} threads", consumerThreadCount);
+        if (VIRTUAL_MODE.equalsIgnoreCase(consumerMode)) {
+            this.taskExecutor = newVirtualThreadExecutor();
+        }
+
+        if (taskExecutor != null) {
+            this.fastSlots = virtualFastMaxConcurrency;
+            log.info("[InMemoryTaskConsumer] Initializing virtual-thread consumer, bulkMaxConcurrency={}, fastMaxConcurrency={}",
+                    virtualMaxConcurrency, virtualFastMaxConcurrency);
+            this.consumerExecutor = newConsumerPool(2, 2, "InMemory-TaskDispatcher-");
+            Semaphore fastPermits = new Semaphore(virtualFastMaxConcurrency);
+            Semaphore bulkPermits = new Semaphore(virtualMaxConcurrency);
+            consumerExecutor.submit(() -> dispatchLoop(true, fastPermits));
+            consumerExecutor.submit(() -> dispatchLoop(false, bulkPermits));
+            return;
+        }
+
+        this.fastSlots = fastThreadCount;
+        if (!autoscaleEnabled) {
+            this.minWorkers = consumerThreadCount;
+            this.maxWorkers = consumerThreadCount;
+        }
+        validateBounds(minWorkers, maxWorkers);
+        this.targetWorkers = Math.max(minWorkers, Math.min(maxWorkers, consumerThreadCount));
+        log.info("[InMemoryTaskConsumer] Initializing consumer with {} bulk and {} fast threads, bulkBounds=[{}, {}], autoscale={}",
+                targetWorkers, fastThreadCount, minWorkers, maxWorkers, autoscaleEnabled);
+        // Unbounded maximum: the worker count is governed by targetWorkers, idle threads expire.
+        this.consumerExecutor = newConsumerPool(fastThreadCount + minWorkers, Integer.MAX_VALUE, "InMemory-TaskConsumer-");
+        for (int i = 0; i < fastThreadCount; i++) {
+            consumerExecutor.submit(() -> consumeLoop(true));
+        }
+        startWorkersUpToTarget();
 
-        this.consumerExecutor = new ThreadPoolExecutor(
-                consumerThreadCount,
-                consumerThreadCount,
-                0L,
-                TimeUnit.MILLISECONDS,
+        log.info("[InMemoryTaskConsumer] Consumer started with {} threads", fastThreadCount + liveWorkers.get());
+    }
+
+    private static ThreadPoolExecutor newConsumerPool(int coreThreads, int maxThreads, String namePrefix) {
+        return new ThreadPoolExecutor(
+                coreThreads,
+                maxThreads,
+                60L,
+                TimeUnit.SECONDS,
                 new SynchronousQueue<>(),
                 new ThreadFactory() {
-                    private int count = 0;
+                    private final AtomicInteger count = new AtomicInteger();
 
                     @Override
                     public Thread newThread(Runnable r) {
-                        Thread thread = new Thread(r, "InMemory-TaskConsumer-" + (++count));
+                        Thread thread = new Thread(r, namePrefix + count.incrementAndGet());
                         thread.setDaemon(false);
                         return thread;
                     }
                 },
                 new ThreadPoolExecutor.CallerRunsPolicy()
         );
+    }
 
-        for (int i = 0; i < consumerThreadCount; i++) {
-            consumerExecutor.submit(this::consumeLoop);
+    /**
+     * Creates a thread-per-task executor of named virtual threads. Looked up reflectively because the
+     * build targets Java 17; returns {@code null} on older runtimes so the consumer falls back to
+     * platform threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "InMemory-VirtualTask-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            log.warn("[InMemoryTaskConsumer] Virtual threads unavailable on Java {}, falling back to platform threads",
+                    System.getProperty("java.specification.version"));
+            return null;
         }
-
-        log.info("[InMemoryTaskConsumer] Consumer started with {} threads", consumerThreadCount);
     }
 
-    private void consumeLoop() {
-        log.info("[InMemoryTaskConsumer] Consumer thread started, threadName={}", Thread.currentThread().getName());
-
-        BlockingQueue<DownloadLogPO> taskQueue = queueService.getTaskQueue();
+    private void consumeLoop(boolean fastWorker) {
+        log.info("[InMemoryTaskConsumer] Consumer thread started, lane={}, threadName={}", laneOf(fastWorker), Thread.currentThread().getName());
 
+        boolean retired = false;
         while (running) {
+            if (!fastWorker && retireIfSurplus()) {
+                retired = true;
+                log.info("[InMemoryTaskConsumer] Bulk worker retired, threadName={}", Thread.currentThread().getName());
+                break;
+            }
             try {
-                DownloadLogPO task = taskQueue.poll(1, TimeUnit.SECONDS);
-
-                if (task == null) {
+                ClaimedTask claimed = takeTask(fastWorker);
+                if (claimed == null) {
                     continue;
                 }
-
-                log.info("[InMemoryTaskConsumer] Received task from memory queue, taskId={}, messageKey={}, threadName={}",
-                        task.getId(), task.getMessageKey(), Thread.currentThread().getName());
-                downloadTaskHandler.handle(task);
+                if (fastWorker) {
+                    runTask(claimed);
+                } else {
+                    busyWorkers.incrementAndGet();
+                    try {
+                        runTask(claimed);
+                    } finally {
+                        busyWorkers.decrementAndGet();
+                    }
+                }
             } catch (InterruptedException e) {
                 log.warn("[InMemoryTaskConsumer] Consumer thread interrupted, threadName={}", Thread.currentThread().getName());
                 Thread.currentThread().interrupt();
@@ -90,10 +227,213 @@ public class InMemoryTaskConsumer implements InitializingBean, DisposableBean {
                 log.error("[InMemoryTaskConsumer] Unexpected error in consume loop, threadName={}", Thread.currentThread().getName(), e);
             }
         }
+        if (!fastWorker && !retired) {
+            liveWorkers.decrementAndGet();
+        }
 
         log.info("[InMemoryTaskConsumer] Consumer thread stopped, threadName={}", Thread.currentThread().getName());
     }
 
+    /** Retires the calling bulk worker when more are live than the target. */
+    private boolean retireIfSurplus() {
+        while (true) {
+            int live = liveWorkers.get();
+            if (live <= targetWorkers) {
+                return false;
+            }
+            if (liveWorkers.compareAndSet(live, live - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void startWorkersUpToTarget() {
+        while (running && liveWorkers.get() < targetWorkers) {
+            liveWorkers.incrementAndGet();
+            consumerExecutor.submit(() -> consumeLoop(false));
+        }
+    }
+
+    /**
+     * Re-targets the bulk worker count from queue depth, the oldest queued task and recent fetch latency.
+     * Growth is multiplicative so a month-end backlog is absorbed within a few checks; shrinking is one
+     * worker at a time.
+     */
+    @Scheduled(fixedDelayString = "${download.task.consumer.autoscale.interval-ms:5000}",
+            initialDelayString = "${download.task.consumer.autoscale.interval-ms:5000}")
+    public synchronized void autoscale() {
+        if (!autoscaleEnabled || taskExecutor != null || !running) {
+            return;
+        }
+        FairTaskQueue fastQueue = queueService.getFastQueue();
+        FairTaskQueue bulkQueue = queueService.getBulkQueue();
+        int depth = fastQueue.size() + bulkQueue.size();
+        long oldestWait = Math.max(fastQueue.oldestWaitMillis(), bulkQueue.oldestWaitMillis());
+        long fetchLatency = fetchLatencyTracker.recentAverageMillis();
+        int live = liveWorkers.get();
+        int target = targetWorkers;
+
+        int next = target;
+        String reason;
+        if (fetchLatency > maxFetchLatencyMillis) {
+            next = target - 1;
+            reason = "db-latency";
+            idleTickCount = 0;
+        } else if (depth > 0 && busyWorkers.get() >= live && (oldestWait >= targetWaitMillis || depth > live)) {
+            // Only grow when every worker is busy; tasks held back by a bulkhead would not start sooner.
+            next = target + Math.max(1, target / 2);
+            reason = "backlog";
+            idleTickCount = 0;
+        } else if (depth == 0 && ++idleTickCount >= idleTicks) {
+            next = target - 1;
+            reason = "idle";
+            idleTickCount = 0;
+        } else {
+            reason = "steady";
+        }
+
+        next = Math.max(minWorkers, Math.min(maxWorkers, next));
+        if (next != target) {
+            log.info("[InMemoryTaskConsumer] Autoscale {} -> {}, reason={}, depth={}, oldestWaitMillis={}, fetchLatencyMillis={}",
+                    target, next, reason, depth, oldestWait, fetchLatency);
+            targetWorkers = next;
+            startWorkersUpToTarget();
+        }
+    }
+
+    /** Changes the bulk worker bounds at runtime; {@code null} keeps the current value. */
+    public synchronized void adjustPool(Integer newMin, Integer newMax) {
+        if (taskExecutor != null) {
+            throw new BusinessException("Worker bounds apply to platform mode only");
+        }
+        int min = newMin != null ? newMin : minWorkers;
+        int max = newMax != null ? newMax : maxWorkers;
+        validateBounds(min, max);
+        log.info("[InMemoryTaskConsumer] Bulk worker bounds changed, from=[{}, {}], to=[{}, {}]", minWorkers, maxWorkers, min, max);
+        this.minWorkers = min;
+        this.maxWorkers = max;
+        consumerExecutor.setCorePoolSize(fastThreadCount + min);
+        this.targetWorkers = Math.max(min, Math.min(max, targetWorkers));
+        startWorkersUpToTarget();
+    }
+
+    private static void validateBounds(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new BusinessException("Invalid bulk worker bounds: min=" + min + ", max=" + max);
+        }
+    }
+
+    public ConsumerPoolDTO poolSnapshot() {
+        FairTaskQueue fastQueue = queueService.getFastQueue();
+        FairTaskQueue bulkQueue = queueService.getBulkQueue();
+        ConsumerPoolDTO pool = new ConsumerPoolDTO();
+        pool.setMode(taskExecutor != null ? VIRTUAL_MODE : "platform");
+        pool.setAutoscaleEnabled(autoscaleEnabled && taskExecutor == null);
+        pool.setMinWorkers(minWorkers);
+        pool.setMaxWorkers(maxWorkers);
+        pool.setTargetWorkers(targetWorkers);
+        pool.setLiveWorkers(liveWorkers.get());
+        pool.setFastWorkers(fastSlots);
+        pool.setQueueCapacity(queueService.getQueueCapacity());
+        pool.setQueueDepth(fastQueue.size() + bulkQueue.size());
+        pool.setOldestWaitMillis(Math.max(fastQueue.oldestWaitMillis(), bulkQueue.oldestWaitMillis()));
+        pool.setFetchLatencyMillis(fetchLatencyTracker.recentAverageMillis());
+        return pool;
+    }
+
+    /** Takes a task only once a permit is free, then hands it to its own virtual thread. */
+    private void dispatchLoop(boolean fastLane, Semaphore permits) {
+        log.info("[InMemoryTaskConsumer] Dispatcher started, lane={}, threadName={}", laneOf(fastLane), Thread.currentThread().getName());
+
+        while (running) {
+            try {
+                permits.acquire();
+                ClaimedTask claimed;
+                try {
+                    claimed = takeTask(fastLane);
+                } catch (Exception e) {
+                    permits.release();
+                    throw e;
+                }
+                if (claimed == null) {
+                    permits.release();
+                    continue;
+                }
+                taskExecutor.execute(() -> {
+                    try {
+                        runTask(claimed);
+                    } catch (Exception e) {
+                        log.error("[InMemoryTaskConsumer] Task thread failed, taskId={}", claimed.task.getId(), e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                log.warn("[InMemoryTaskConsumer] Dispatcher interrupted, threadName={}", Thread.currentThread().getName());
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("[InMemoryTaskConsumer] Unexpected error in dispatch loop, threadName={}", Thread.currentThread().getName(), e);
+            }
+        }
+
+        log.info("[InMemoryTaskConsumer] Dispatcher stopped, threadName={}", Thread.currentThread().getName());
+    }
+
+    /** Polls the home lane, then steals from the other one; {@code null} when neither had a task. */
+    private ClaimedTask takeTask(boolean fastWorker) throws InterruptedException {
+        FairTaskQueue homeQueue = fastWorker ? queueService.getFastQueue() : queueService.getBulkQueue();
+        FairTaskQueue otherQueue = fastWorker ? queueService.getBulkQueue() : queueService.getFastQueue();
+
+        DownloadLogPO task = homeQueue.poll(HOME_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (task != null) {
+            return new ClaimedTask(task, false);
+        }
+        if (fastWorker && !reserveBulkSteal()) {
+            return null;
+        }
+        task = otherQueue.poll(0, TimeUnit.MILLISECONDS);
+        if (task == null) {
+            if (fastWorker) {
+                fastWorkersOnBulk.decrementAndGet();
+            }
+            return null;
+        }
+        log.info("[InMemoryTaskConsumer] Stole task from other lane, taskId={}, lane={}", task.getId(), laneOf(fastWorker));
+        return new ClaimedTask(task, fastWorker);
+    }
+
+    private void runTask(ClaimedTask claimed) {
+        DownloadLogPO task = claimed.task;
+        log.info("[InMemoryTaskConsumer] Received task from memory queue, taskId={}, messageKey={}, threadName={}",
+                task.getId(), MessageKeyUtils.of(task), Thread.currentThread().getName());
+        try {
+            downloadTaskHandler.handle(task);
+        } finally {
+            queueService.onTaskFinished(task);
+            if (claimed.stolenBulk) {
+                fastWorkersOnBulk.decrementAndGet();
+            }
+        }
+    }
+
+    /** Claims a slot for fast-lane capacity to run bulk work, leaving at least one fast slot free. */
+    private boolean reserveBulkSteal() {
+        while (true) {
+            int current = fastWorkersOnBulk.get();
+            if (current >= fastSlots - 1) {
+                return false;
+            }
+            if (fastWorkersOnBulk.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static String laneOf(boolean fastLane) {
+        return fastLane ? InMemoryTaskQueueService.FAST_LANE : InMemoryTaskQueueService.BULK_LANE;
+    }
+
     @Override
     public void destroy() throws Exception {
         log.info("[InMemoryTaskConsumer] Shutting down consumer...");
@@ -106,12 +446,34 @@ public class InMemoryTaskConsumer implements InitializingBean, DisposableBean {
                 log.warn("[InMemoryTaskConsumer] Consumer threads did not terminate in time, forcing shutdown...");
                 consumerExecutor.shutdownNow();
             }
+            if (taskExecutor != null) {
+                taskExecutor.shutdown();
+                if (!taskExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("[InMemoryTaskConsumer] Virtual task threads did not terminate in time, forcing shutdown...");
+                    taskExecutor.shutdownNow();
+                }
+            }
         } catch (InterruptedException e) {
             log.error("[InMemoryTaskConsumer] Interrupted while waiting for consumer shutdown", e);
             consumerExecutor.shutdownNow();
+            if (taskExecutor != null) {
+                taskExecutor.shutdownNow();
+            }
             Thread.currentThread().interrupt();
         }
 
         log.info("[InMemoryTaskConsumer] Consumer shutdown completed");
     }
+
+    /** A polled task and whether it occupies a fast slot's bulk-steal reservation. */
+    private static final class ClaimedTask {
+
+        private final DownloadLogPO task;
+        private final boolean stolenBulk;
+
+        private ClaimedTask(DownloadLogPO task, boolean stolenBulk) {
+            this.task = task;
+            this.stolenBulk = stolenBulk;
+        }
+    }
 }
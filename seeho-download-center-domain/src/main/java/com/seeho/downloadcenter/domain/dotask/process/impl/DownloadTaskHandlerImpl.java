@@ -8,6 +8,7 @@ import com.seeho.downloadcenter.domain.dotask.process.ManagerDataProcess;
 import com.seeho.downloadcenter.domain.dotask.process.QueryExportDataService;
 import com.seeho.downloadcenter.domain.dotask.process.TaskFailureCallback;
 import com.seeho.downloadcenter.domain.downloadlog.DownloadLogMangerService;
+import com.seeho.downloadcenter.domain.utils.MessageKeyUtils;
 import com.seeho.downloadcenter.domain.utils.SpringContextHolder;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
 import jakarta.annotation.Resource;
@@ -37,7 +38,7 @@ public class DownloadTaskHandlerImpl implements DownloadTaskHandler {
     @Override
     public void handle(DownloadLogPO task) {
         Long taskId = task.getId();
-        log.info("[DownloadTaskHandler] Start processing task, taskId={}, messageKey={}", taskId, task.getMessageKey());
+        log.info("[DownloadTaskHandler] Start processing task, taskId={}, messageKey={}", taskId, MessageKeyUtils.of(task));
 
         try {
             Boolean updated = downloadLogMangerService.updateDownloadLogStatus(
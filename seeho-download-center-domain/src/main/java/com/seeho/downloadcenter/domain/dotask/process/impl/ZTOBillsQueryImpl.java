@@ -7,9 +7,7 @@ import com.seeho.downloadcenter.domain.utils.JsonUtil;
 import com.seeho.downloadcenter.domain.utils.ParamSplitUtils;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 
@@ -58,12 +56,4 @@ public class ZTOBillsQueryImpl implements QueryExportDataService<QueryBillsDTO,
     public Class<BillListDTO> getExportDataClass() {
         return BillListDTO.class;
     }
-
-    @Override
-    public Map<String, Function<BillListDTO, Object>> getFieldMapper() {
-        Map<String, Function<BillListDTO, Object>> mapper = new HashMap<>();
-        mapper.put("billDate", BillListDTO::getBillDate);
-        // TODO:
-        return mapper;
-    }
 }
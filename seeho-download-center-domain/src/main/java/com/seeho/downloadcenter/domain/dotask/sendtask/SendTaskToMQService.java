@@ -2,6 +2,40 @@ package com.seeho.downloadcenter.domain.dotask.sendtask;
 
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public interface SendTaskToMQService {
     void sendTaskToMQ(DownloadLogPO downloadLogPO);
+
+    /**
+     * Called on a task about to be inserted or reset to NOT_EXECUTED, inside the same transaction. Queues
+     * that keep their state on the row itself set it here, so it is written together with the task.
+     */
+    default void stageTask(DownloadLogPO downloadLogPO) {
+    }
+
+    /**
+     * Dispatches tasks created together, returning the failure message of every task that could not be
+     * sent, by task id. Queues with a per-call round trip should override this to send them at once.
+     */
+    default Map<Long, String> sendTasksToMQ(List<DownloadLogPO> downloadLogPOs) {
+        Map<Long, String> failures = new LinkedHashMap<>();
+        for (DownloadLogPO downloadLogPO : downloadLogPOs) {
+            try {
+                sendTaskToMQ(downloadLogPO);
+            } catch (Exception e) {
+                failures.put(downloadLogPO.getId(), String.valueOf(e.getMessage()));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Called after a NOT_EXECUTED task was marked CANCELLED, to drop anything still pending for it. Queues
+     * that only hand tasks to the handler can rely on its status check and keep this no-op.
+     */
+    default void cancelTask(Long taskId) {
+    }
 }
@@ -0,0 +1,92 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import com.seeho.downloadcenter.domain.dotask.sendtask.SendTaskToMQService;
+import com.seeho.downloadcenter.persistence.IService.DownloadLogService;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Uses {@code download_log} itself as the task queue. Staging a task stamps when it becomes available
+ * (now, or after its type's delay) on the row being written, so it is claimable as soon as the creating
+ * transaction commits and a failed publish cannot strand it; a claim older than that stamp belongs to an
+ * earlier attempt and no longer counts. Workers on every node claim available rows through
+ * {@code DbTaskConsumer}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "download.task.queue.mode", havingValue = "db")
+public class DbTaskQueueService implements SendTaskToMQService {
+
+    @Resource
+    private DownloadLogService downloadLogService;
+
+    @Override
+    public void stageTask(DownloadLogPO downloadLogPO) {
+        downloadLogPO.setAvailableTime(availableTime(downloadLogPO.getDownloadType()));
+    }
+
+    /** Staged rows are already published; this only stamps rows written without staging. */
+    @Override
+    public void sendTaskToMQ(DownloadLogPO downloadLogPO) {
+        LocalDateTime availableTime = availableTime(downloadLogPO.getDownloadType());
+        LambdaUpdateWrapper<DownloadLogPO> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(DownloadLogPO::getId, downloadLogPO.getId())
+                .setSql("available_time = COALESCE(available_time, {0})", availableTime);
+        if (!downloadLogService.update(updateWrapper)) {
+            throw new BusinessException("Task not found, cannot publish: " + downloadLogPO.getId());
+        }
+        log.info("[DbTaskQueue] Task published, taskId={}", downloadLogPO.getId());
+    }
+
+    /** One update per download type instead of one per task. */
+    @Override
+    public Map<Long, String> sendTasksToMQ(List<DownloadLogPO> downloadLogPOs) {
+        Map<Long, String> failures = new LinkedHashMap<>();
+        Map<String, List<Long>> idsByType = downloadLogPOs.stream().collect(Collectors.groupingBy(
+                DownloadLogPO::getDownloadType, LinkedHashMap::new, Collectors.mapping(DownloadLogPO::getId, Collectors.toList())));
+        for (Map.Entry<String, List<Long>> entry : idsByType.entrySet()) {
+            try {
+                LambdaUpdateWrapper<DownloadLogPO> updateWrapper = new LambdaUpdateWrapper<>();
+                updateWrapper.in(DownloadLogPO::getId, entry.getValue())
+                        .setSql("available_time = COALESCE(available_time, {0})", availableTime(entry.getKey()));
+                int updated = downloadLogService.getBaseMapper().update(null, updateWrapper);
+                if (updated != entry.getValue().size()) {
+                    failMissing(entry.getValue(), failures);
+                }
+                log.info("[DbTaskQueue] Tasks published, downloadType={}, count={}, updated={}",
+                        entry.getKey(), entry.getValue().size(), updated);
+            } catch (Exception e) {
+                entry.getValue().forEach(id -> failures.put(id, String.valueOf(e.getMessage())));
+            }
+        }
+        return failures;
+    }
+
+    /** Reports the ids the batch update did not reach, the way the single-task path does. */
+    private void failMissing(List<Long> ids, Map<Long, String> failures) {
+        Set<Long> found = downloadLogService.listByIds(ids).stream().map(DownloadLogPO::getId).collect(Collectors.toSet());
+        for (Long id : ids) {
+            if (!found.contains(id)) {
+                failures.put(id, "Task not found, cannot publish: " + id);
+            }
+        }
+    }
+
+    private static LocalDateTime availableTime(String downloadType) {
+        Long timeoutSeconds = DownloadRefServiceEnum.matchDownloadType(downloadType).getTimeout();
+        return LocalDateTime.now().plusSeconds(timeoutSeconds == null ? 0 : Math.max(timeoutSeconds, 0));
+    }
+}
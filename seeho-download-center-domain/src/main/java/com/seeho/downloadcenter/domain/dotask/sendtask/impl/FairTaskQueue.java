@@ -0,0 +1,316 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import com.seeho.downloadcenter.base.model.TaskQueueLaneDTO;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded task queue that dispatches fairly instead of first-in first-out.
+ * Tasks are queued per download type and, within a type, per user. Both levels are served by deficit
+ * round-robin with unit cost: a lane at the head of the ring takes up to {@code weight} tasks per round
+ * before the next lane is served, so a user with fifty queued exports delays a user with one by at most
+ * a round, and a type with weight 3 gets three dispatches for every one of a weight-1 type.
+ * A type at its {@link TaskBulkhead} limit is passed over until one of its running tasks finishes.
+ */
+public class FairTaskQueue {
+
+    /** Recent waits kept per type lane for the p95 in {@link #snapshot()}. */
+    private static final int WAIT_SAMPLES = 256;
+
+    private int capacity;
+    private final ToIntFunction<String> typeWeights;
+    private final ToIntFunction<Long> userWeights;
+    private final TaskBulkhead bulkhead;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final Map<String, TypeLane> typeLanes = new LinkedHashMap<>();
+    private final Deque<TypeLane> activeTypes = new ArrayDeque<>();
+    private int size;
+
+    public FairTaskQueue(int capacity, ToIntFunction<String> typeWeights, ToIntFunction<Long> userWeights,
+                         TaskBulkhead bulkhead) {
+        this.capacity = capacity;
+        this.typeWeights = typeWeights;
+        this.userWeights = userWeights;
+        this.bulkhead = bulkhead;
+        bulkhead.addReleaseListener(this::signalAdmission);
+    }
+
+    /** Queues the task, waiting up to {@code timeout} for room; returns {@code false} when still full. */
+    public boolean offer(DownloadLogPO task, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            TypeLane typeLane = typeLanes.computeIfAbsent(task.getDownloadType(), TypeLane::new);
+            if (typeLane.isEmpty()) {
+                activeTypes.addLast(typeLane);
+            }
+            typeLane.add(task);
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next task in fair order whose type has a free bulkhead permit, waiting up to {@code timeout};
+     * {@code null} when none became available. The caller owns the permit and must release it through
+     * {@link TaskBulkhead#release(String)} once the task finishes.
+     */
+    public DownloadLogPO poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            TypeLane typeLane;
+            while ((typeLane = nextAdmitted()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            DownloadLogPO task = typeLane.poll();
+            size--;
+            if (typeLane.isEmpty()) {
+                activeTypes.pollFirst();
+                typeLane.deficit = 0;
+            } else if (typeLane.deficit <= 0) {
+                activeTypes.addLast(activeTypes.pollFirst());
+            }
+            notFull.signal();
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the first active type with a free permit to the head of the ring, acquiring that permit.
+     * Types at their limit are rotated to the back with their deficit kept, so they resume their share
+     * once a permit frees up.
+     */
+    private TypeLane nextAdmitted() {
+        for (int i = activeTypes.size(); i > 0; i--) {
+            TypeLane typeLane = activeTypes.peekFirst();
+            if (bulkhead.tryAcquire(typeLane.downloadType)) {
+                return typeLane;
+            }
+            bulkhead.recordDeferred(typeLane.downloadType);
+            activeTypes.addLast(activeTypes.pollFirst());
+        }
+        return null;
+    }
+
+    /** Wakes waiting consumers after a permit was released so they can re-check held-back types. */
+    private void signalAdmission() {
+        lock.lock();
+        try {
+            if (size > 0) {
+                notEmpty.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Changes the bound; queued tasks beyond a lowered capacity stay queued, new offers wait for room. */
+    public void setCapacity(int capacity) {
+        lock.lock();
+        try {
+            this.capacity = capacity;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wait of the longest-queued task across all lanes; zero when empty. */
+    public long oldestWaitMillis() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        lock.lock();
+        try {
+            for (TypeLane typeLane : activeTypes) {
+                for (UserLane userLane : typeLane.activeUsers) {
+                    oldest = Math.max(oldest, now - userLane.tasks.peekFirst().enqueueNanos);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(oldest);
+    }
+
+    /** Per-lane depth and waits: one row per download type followed by its non-empty user lanes. */
+    public List<TaskQueueLaneDTO> snapshot() {
+        long now = System.nanoTime();
+        List<TaskQueueLaneDTO> lanes = new ArrayList<>();
+        lock.lock();
+        try {
+            for (TypeLane typeLane : typeLanes.values()) {
+                TaskQueueLaneDTO typeRow = new TaskQueueLaneDTO();
+                typeRow.setDownloadType(typeLane.downloadType);
+                typeRow.setWeight(typeLane.weight);
+                typeRow.setDepth(typeLane.depth);
+                typeRow.setDispatched(typeLane.dispatched);
+                typeRow.setP95WaitMillis(typeLane.p95WaitMillis());
+                long oldest = 0;
+                List<TaskQueueLaneDTO> userRows = new ArrayList<>();
+                for (UserLane userLane : typeLane.userLanes.values()) {
+                    long waitMillis = TimeUnit.NANOSECONDS.toMillis(now - userLane.tasks.peekFirst().enqueueNanos);
+                    oldest = Math.max(oldest, waitMillis);
+                    TaskQueueLaneDTO userRow = new TaskQueueLaneDTO();
+                    userRow.setDownloadType(typeLane.downloadType);
+                    userRow.setUserId(userLane.userId);
+                    userRow.setWeight(userLane.weight);
+                    userRow.setDepth(userLane.tasks.size());
+                    userRow.setOldestWaitMillis(waitMillis);
+                    userRows.add(userRow);
+                }
+                typeRow.setOldestWaitMillis(oldest);
+                lanes.add(typeRow);
+                lanes.addAll(userRows);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return lanes;
+    }
+
+    private static Long userOf(DownloadLogPO task) {
+        if (task.getUserId() != null) {
+            return task.getUserId();
+        }
+        return task.getCreateUserId() != null ? task.getCreateUserId() : 0L;
+    }
+
+    private static final class QueuedTask {
+
+        private final DownloadLogPO task;
+        private final long enqueueNanos = System.nanoTime();
+
+        private QueuedTask(DownloadLogPO task) {
+            this.task = task;
+        }
+    }
+
+    /** Tasks of one user within a type; dropped from its type lane once empty. */
+    private static final class UserLane {
+
+        private final Long userId;
+        private final int weight;
+        private final Deque<QueuedTask> tasks = new ArrayDeque<>();
+        private int deficit;
+
+        private UserLane(Long userId, int weight) {
+            this.userId = userId;
+            this.weight = weight;
+        }
+    }
+
+    /** Tasks of one download type, with round-robin over its users; kept for its statistics. */
+    private final class TypeLane {
+
+        private final String downloadType;
+        private final int weight;
+        private final Map<Long, UserLane> userLanes = new LinkedHashMap<>();
+        private final Deque<UserLane> activeUsers = new ArrayDeque<>();
+        private final long[] waitSamples = new long[WAIT_SAMPLES];
+        private int depth;
+        private int deficit;
+        private long dispatched;
+
+        private TypeLane(String downloadType) {
+            this.downloadType = downloadType;
+            this.weight = Math.max(typeWeights.applyAsInt(downloadType), 1);
+        }
+
+        private boolean isEmpty() {
+            return depth == 0;
+        }
+
+        private void add(DownloadLogPO task) {
+            Long userId = userOf(task);
+            UserLane userLane = userLanes.computeIfAbsent(userId, id -> new UserLane(id, Math.max(userWeights.applyAsInt(id), 1)));
+            if (userLane.tasks.isEmpty()) {
+                activeUsers.addLast(userLane);
+            }
+            userLane.tasks.addLast(new QueuedTask(task));
+            depth++;
+        }
+
+        /** Takes one task, charging this lane and the served user lane one unit of deficit each. */
+        private DownloadLogPO poll() {
+            if (deficit <= 0) {
+                deficit += weight;
+            }
+            deficit--;
+
+            UserLane userLane = activeUsers.peekFirst();
+            if (userLane.deficit <= 0) {
+                userLane.deficit += userLane.weight;
+            }
+            userLane.deficit--;
+            QueuedTask queued = userLane.tasks.pollFirst();
+            if (userLane.tasks.isEmpty()) {
+                activeUsers.pollFirst();
+                userLanes.remove(userLane.userId);
+            } else if (userLane.deficit <= 0) {
+                activeUsers.addLast(activeUsers.pollFirst());
+            }
+            depth--;
+            waitSamples[(int) (dispatched % WAIT_SAMPLES)] = System.nanoTime() - queued.enqueueNanos;
+            dispatched++;
+            return queued.task;
+        }
+
+        private long p95WaitMillis() {
+            int samples = (int) Math.min(dispatched, WAIT_SAMPLES);
+            if (samples == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(waitSamples, samples);
+            Arrays.sort(sorted);
+            return TimeUnit.NANOSECONDS.toMillis(sorted[Math.min(samples - 1, (int) Math.ceil(samples * 0.95) - 1)]);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Hashed timing wheel for delayed task dispatch, keyed by task id. Scheduling and cancelling are O(1):
+ * both only enqueue the timeout for the worker thread, which moves new timeouts into the bucket of their
+ * tick, unlinks cancelled ones and expires one bucket per {@code tickMillis}. A timeout further out than
+ * one revolution waits in its bucket for the remaining rounds. Expired tasks are handed to
+ * {@code dispatcher} so a slow task never delays the wheel; the accuracy is one tick.
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor dispatcher;
+    private final Thread worker;
+    private final long startNanos = System.nanoTime();
+
+    private final Map<Long, Timeout> timeouts = new ConcurrentHashMap<>();
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+    private long tick;
+
+    /** @param wheelSize buckets per revolution, rounded up to a power of two */
+    public HashedWheelTimer(String threadName, long tickMillis, int wheelSize, Executor dispatcher) {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tickMillis, 1));
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.dispatcher = dispatcher;
+        this.worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Runs {@code task} after {@code delayMillis}, replacing a pending timeout of the same key. */
+    public void schedule(long key, Runnable task, long delayMillis) {
+        if (!running) {
+            throw new IllegalStateException("Timer is stopped");
+        }
+        long deadline = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0));
+        Timeout timeout = new Timeout(key, task, deadline);
+        Timeout previous = timeouts.put(key, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+        added.add(timeout);
+    }
+
+    /** Cancels the pending timeout of {@code key}; {@code false} when there is none or it already fired. */
+    public boolean cancel(long key) {
+        Timeout timeout = timeouts.remove(key);
+        return timeout != null && timeout.cancel();
+    }
+
+    public int pendingCount() {
+        return timeouts.size();
+    }
+
+    /** Stops the worker; pending timeouts are dropped and their count returned. */
+    public int stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int pending = timeouts.size();
+        timeouts.clear();
+        return pending;
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepMillis = TimeUnit.NANOSECONDS.toMillis(deadline - (System.nanoTime() - startNanos) + 999_999);
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+            }
+            removeCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state != Timeout.PENDING) {
+                continue;
+            }
+            long dueTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            // Already overdue ones go to the current bucket and expire this tick.
+            wheel[(int) (Math.max(dueTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void dispatch(Timeout timeout) {
+        timeouts.remove(timeout.key, timeout);
+        try {
+            dispatcher.execute(timeout.task);
+        } catch (Exception e) {
+            log.error("[HashedWheelTimer] Failed to dispatch expired task, key={}", timeout.key, e);
+        }
+    }
+
+    private final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final long key;
+        private final Runnable task;
+        /** Nanos since the timer started. */
+        private final long deadlineNanos;
+        private volatile int state = PENDING;
+
+        // Owned by the worker thread.
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(long key, Runnable task, long deadlineNanos) {
+            this.key = key;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+    }
+
+    /** Doubly linked list of the timeouts due on one tick of the wheel. */
+    private final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        private void expire(long deadlineNanos) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= deadlineNanos) {
+                    remove(timeout);
+                    if (Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED)) {
+                        dispatch(timeout);
+                    }
+                } else if (timeout.state == Timeout.CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -1,67 +1,408 @@
 package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
 
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.seeho.downloadcenter.base.exception.BusinessException;
 import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
+import com.seeho.downloadcenter.base.enums.DownloadStatusEnum;
+import com.seeho.downloadcenter.domain.dotask.process.TaskSizeEstimator;
 import com.seeho.downloadcenter.domain.dotask.sendtask.SendTaskToMQService;
+import com.seeho.downloadcenter.domain.utils.MessageKeyUtils;
+import com.seeho.downloadcenter.persistence.IService.DownloadLogService;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import com.seeho.downloadcenter.base.model.TaskBulkheadDTO;
+import com.seeho.downloadcenter.base.model.TaskQueueLaneDTO;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
 
 /**
- * Development-only task queue backed by {@link BlockingQueue} plus simple delay scheduling.
+ * Development-only task queue backed by {@link FairTaskQueue}s, with per-type delays held on a
+ * {@link HashedWheelTimer} until the task is due.
+ * Tasks are routed by estimated size: up to {@code download.task.queue.fast-lane.max-rows} rows go to the
+ * fast lane, larger or unknown ones to the bulk lane, each with its own consumer workers and the full
+ * {@code download.task.queue.capacity}, so up to twice that many tasks are queued in total. The estimate is a
+ * COUNT query, so routing runs on {@code router-threads} of its own: sending only journals the task and hands
+ * it over, and a task the lanes reject is re-armed and finally failed for the retry job like a due delayed one.
+ * A batch from {@link #sendTasksToMQ} never waits for room: whatever overflows the lanes is failed at once.
+ * Type weights default to {@link DownloadRefServiceEnum#getQueueWeight()}; both type and user weights can be
+ * overridden with {@code code:weight} lists, e.g. {@code download.task.queue.fair.user-weights=1001:3}.
+ * Both lanes share the node's {@link TaskBulkhead}.
+ * With {@code download.task.queue.journal.enabled} every queued or delayed task is also written to a
+ * {@link TaskJournal}; on startup the journal is replayed and tasks still pending in the database are
+ * queued again, delayed ones with their remaining delay. Cancelling a task drops its pending timer entry and
+ * journal record.
  */
 @Slf4j
 @Service
 @ConditionalOnProperty(name = "download.task.queue.mode", havingValue = "memory")
 public class InMemoryTaskQueueService implements SendTaskToMQService {
 
-    private final BlockingQueue<DownloadLogPO> taskQueue;
+    public static final String FAST_LANE = "fast";
+    public static final String BULK_LANE = "bulk";
 
-    private final ScheduledExecutorService delayScheduler;
+    private FairTaskQueue fastQueue;
 
+    private FairTaskQueue bulkQueue;
+
+    @Resource
+    private TaskBulkhead bulkhead;
+
+    /** {@code null} when journaling is disabled. */
+    private TaskJournal journal;
+
+    private HashedWheelTimer delayTimer;
+
+    /** Estimates and queues sent, replayed and due tasks; may block on a full lane. */
+    private ExecutorService router;
+
+    private ScheduledExecutorService journalFlusher;
+
+    /** Capacity of each lane, not of the queue as a whole. */
     @Value("${download.task.queue.capacity:1000}")
-    private int queueCapacity;
+    private volatile int queueCapacity;
+
+    @Value("${download.task.queue.router-threads:2}")
+    private int routerThreads;
+
+    /** Largest estimated export routed to the fast lane; matches the single-query export path. */
+    @Value("${download.task.queue.fast-lane.max-rows:10000}")
+    private long fastLaneMaxRows;
+
+    @Resource
+    private TaskSizeEstimator taskSizeEstimator;
+
+    @Value("${download.task.queue.fair.type-weights:}")
+    private String typeWeights;
+
+    @Value("${download.task.queue.fair.user-weights:}")
+    private String userWeights;
+
+    @Resource
+    private DownloadLogService downloadLogService;
+
+    @Value("${download.task.queue.journal.enabled:false}")
+    private boolean journalEnabled;
+
+    @Value("${download.task.queue.journal.dir:./data/task-journal}")
+    private String journalDir;
+
+    @Value("${download.task.queue.journal.segment-bytes:67108864}")
+    private long journalSegmentBytes;
+
+    @Value("${download.task.queue.journal.flush-interval-ms:1000}")
+    private long journalFlushIntervalMillis;
+
+    @Value("${download.task.queue.timer.tick-ms:100}")
+    private long timerTickMillis;
+
+    @Value("${download.task.queue.timer.wheel-size:512}")
+    private int timerWheelSize;
+
+    /** Times a due task that met a full lane is put back on the timer before it is failed for the retry job. */
+    @Value("${download.task.queue.timer.rearm-attempts:5}")
+    private int rearmAttempts;
+
+    /** First re-arm delay; doubles per attempt. */
+    @Value("${download.task.queue.timer.rearm-backoff-ms:1000}")
+    private long rearmBackoffMillis;
 
     private static final int OFFER_TIMEOUT_SECONDS = 5;
 
-    public InMemoryTaskQueueService() {
-        this.taskQueue = new LinkedBlockingQueue<>(1000);
+    private static final int REPLAY_BATCH_SIZE = 500;
+
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 
-        this.delayScheduler = Executors.newScheduledThreadPool(1, r -> {
-            Thread thread = new Thread(r, "InMemory-DelayScheduler");
+    private static ThreadFactory daemonThreads(String prefix, AtomicInteger count) {
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
             thread.setDaemon(true);
             return thread;
-        });
+        };
+    }
+
+    @PostConstruct
+    public void init() {
+        Map<String, Integer> typeOverrides = parseWeights(typeWeights);
+        Map<String, Integer> userOverrides = parseWeights(userWeights);
+        ToIntFunction<String> typeWeight = type -> typeOverrides.getOrDefault(type, defaultTypeWeight(type));
+        ToIntFunction<Long> userWeight = userId -> userOverrides.getOrDefault(String.valueOf(userId), 1);
+        this.fastQueue = new FairTaskQueue(queueCapacity, typeWeight, userWeight, bulkhead);
+        this.bulkQueue = new FairTaskQueue(queueCapacity, typeWeight, userWeight, bulkhead);
+        log.info("[InMemoryTaskQueue] Fair queues initialized, capacityPerLane={}, fastLaneMaxRows={}, typeWeights={}, userWeights={}",
+                queueCapacity, fastLaneMaxRows, typeOverrides, userOverrides);
+
+        int threads = Math.max(routerThreads, 1);
+        this.router = Executors.newFixedThreadPool(threads, daemonThreads("InMemory-TaskRouter-", new AtomicInteger()));
+        this.delayTimer = new HashedWheelTimer("InMemory-DelayTimer", timerTickMillis, timerWheelSize, router);
+
+        if (journalEnabled) {
+            openJournal();
+        }
+    }
+
+    private void openJournal() {
+        this.journal = new TaskJournal(Paths.get(journalDir), journalSegmentBytes);
+        List<TaskJournal.Entry> entries;
+        try {
+            entries = journal.recover();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open task journal at " + journalDir, e);
+        }
+        replay(entries);
+        this.journalFlusher = Executors.newSingleThreadScheduledExecutor(daemonThreads("InMemory-JournalFlusher"));
+        journalFlusher.scheduleWithFixedDelay(() -> {
+            try {
+                journal.flush();
+            } catch (Exception e) {
+                log.error("[InMemoryTaskQueue] Journal flush failed", e);
+            }
+        }, journalFlushIntervalMillis, journalFlushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Queues journaled tasks that are still pending in the database; the rest are acknowledged. */
+    private void replay(List<TaskJournal.Entry> entries) {
+        int requeued = 0;
+        long now = System.currentTimeMillis();
+        for (int from = 0; from < entries.size(); from += REPLAY_BATCH_SIZE) {
+            List<TaskJournal.Entry> batch = entries.subList(from, Math.min(from + REPLAY_BATCH_SIZE, entries.size()));
+            Map<Long, DownloadLogPO> tasks = downloadLogService.listByIds(
+                            batch.stream().map(TaskJournal.Entry::getTaskId).collect(Collectors.toList()))
+                    .stream()
+                    .collect(Collectors.toMap(DownloadLogPO::getId, Function.identity()));
+            for (TaskJournal.Entry entry : batch) {
+                DownloadLogPO task = tasks.get(entry.getTaskId());
+                if (task == null || !DownloadStatusEnum.NOT_EXECUTED.getCode().equals(task.getDownloadStatus())) {
+                    journal.ack(entry.getTaskId());
+                    continue;
+                }
+                long delayMillis = entry.getAvailableAtMillis() - now;
+                if (delayMillis > 0) {
+                    delayTimer.schedule(task.getId(), () -> route(task), delayMillis);
+                } else {
+                    router.execute(() -> route(task));
+                }
+                requeued++;
+            }
+        }
+        log.info("[InMemoryTaskQueue] Journal replayed, records={}, requeued={}", entries.size(), requeued);
+    }
+
+    public FairTaskQueue getFastQueue() {
+        return fastQueue;
+    }
+
+    public FairTaskQueue getBulkQueue() {
+        return bulkQueue;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /** Resizes both lanes at runtime. */
+    public void resizeCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new BusinessException("Queue capacity must be positive");
+        }
+        fastQueue.setCapacity(capacity);
+        bulkQueue.setCapacity(capacity);
+        log.info("[InMemoryTaskQueue] Capacity per lane changed, from={}, to={}", queueCapacity, capacity);
+        this.queueCapacity = capacity;
+    }
+
+    public TaskBulkhead getBulkhead() {
+        return bulkhead;
     }
 
-    public BlockingQueue<DownloadLogPO> getTaskQueue() {
-        return taskQueue;
+    /** Called by the consumer once a polled task is done: frees its bulkhead permit and journal record. */
+    public void onTaskFinished(DownloadLogPO task) {
+        bulkhead.release(task.getDownloadType());
+        if (journal != null) {
+            journal.ack(task.getId());
+        }
+    }
+
+    /** Concurrency limit, running count and starvation of every type seen since startup. */
+    public List<TaskBulkheadDTO> bulkheadSnapshot() {
+        return bulkhead.snapshot();
+    }
+
+    /** Depth and wait of every type lane and of the users queued within it, fast lane first. */
+    public List<TaskQueueLaneDTO> laneSnapshot() {
+        List<TaskQueueLaneDTO> lanes = new ArrayList<>();
+        for (TaskQueueLaneDTO lane : fastQueue.snapshot()) {
+            lane.setLane(FAST_LANE);
+            lanes.add(lane);
+        }
+        for (TaskQueueLaneDTO lane : bulkQueue.snapshot()) {
+            lane.setLane(BULK_LANE);
+            lanes.add(lane);
+        }
+        return lanes;
+    }
+
+    private static int defaultTypeWeight(String downloadType) {
+        try {
+            Integer weight = DownloadRefServiceEnum.matchDownloadType(downloadType).getQueueWeight();
+            return weight == null ? 1 : weight;
+        } catch (BusinessException e) {
+            return 1;
+        }
+    }
+
+    /** Parses {@code key:weight,key:weight}; malformed entries fail startup rather than being ignored. */
+    static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> weights = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return weights;
+        }
+        for (String entry : spec.split(",")) {
+            String[] pair = entry.trim().split(":");
+            if (pair.length != 2) {
+                throw new BusinessException("Invalid queue weight entry: " + entry);
+            }
+            try {
+                weights.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+            } catch (NumberFormatException e) {
+                throw new BusinessException("Invalid queue weight entry: " + entry);
+            }
+        }
+        return weights;
     }
 
     @Override
     public void sendTaskToMQ(DownloadLogPO downloadLogPO) {
         log.info("[InMemoryTaskQueue] Send task to memory queue, taskId={}, messageKey={}",
-                downloadLogPO.getId(), downloadLogPO.getMessageKey());
+                downloadLogPO.getId(), MessageKeyUtils.of(downloadLogPO));
 
         Long timeoutSeconds = DownloadRefServiceEnum.matchDownloadType(downloadLogPO.getDownloadType()).getTimeout();
+        journal(downloadLogPO, timeoutSeconds);
 
         if (timeoutSeconds == null || timeoutSeconds <= 0) {
-            offerToQueue(downloadLogPO);
+            try {
+                router.execute(() -> route(downloadLogPO));
+            } catch (RejectedExecutionException e) {
+                throw new BusinessException("Task queue is shutting down, taskId=" + downloadLogPO.getId());
+            }
         } else {
-            delayScheduler.schedule(() -> offerToQueue(downloadLogPO), timeoutSeconds, TimeUnit.SECONDS);
+            delayTimer.schedule(downloadLogPO.getId(), () -> route(downloadLogPO), TimeUnit.SECONDS.toMillis(timeoutSeconds));
             log.info("[InMemoryTaskQueue] Task scheduled with delay, taskId={}, delaySeconds={}",
                     downloadLogPO.getId(), timeoutSeconds);
         }
     }
 
-    private void offerToQueue(DownloadLogPO task) {
+    /**
+     * Journals the batch and hands it over without waiting: delayed tasks go to the timer as usual, the rest
+     * are routed by one router job that offers each without a timeout. A burst larger than the free lane
+     * space would otherwise hold a router thread per task on a full lane, so the overflow is marked FAILED
+     * for the retry job instead. Only a router that is shutting down is reported back as a send failure.
+     */
+    @Override
+    public Map<Long, String> sendTasksToMQ(List<DownloadLogPO> downloadLogPOs) {
+        Map<Long, String> failures = new LinkedHashMap<>();
+        List<DownloadLogPO> due = new ArrayList<>();
+        for (DownloadLogPO task : downloadLogPOs) {
+            Long timeoutSeconds = DownloadRefServiceEnum.matchDownloadType(task.getDownloadType()).getTimeout();
+            journal(task, timeoutSeconds);
+            if (timeoutSeconds == null || timeoutSeconds <= 0) {
+                due.add(task);
+            } else {
+                delayTimer.schedule(task.getId(), () -> route(task), TimeUnit.SECONDS.toMillis(timeoutSeconds));
+            }
+        }
+        if (!due.isEmpty()) {
+            try {
+                router.execute(() -> routeWithoutWaiting(due));
+            } catch (RejectedExecutionException e) {
+                due.forEach(task -> failures.put(task.getId(), "Task queue is shutting down"));
+            }
+        }
+        log.info("[InMemoryTaskQueue] Task batch sent to memory queue, count={}, delayed={}, failed={}",
+                downloadLogPOs.size(), downloadLogPOs.size() - due.size(), failures.size());
+        return failures;
+    }
+
+    private void journal(DownloadLogPO task, Long timeoutSeconds) {
+        if (journal != null) {
+            long delayMillis = timeoutSeconds == null ? 0 : TimeUnit.SECONDS.toMillis(Math.max(timeoutSeconds, 0));
+            journal.append(task.getId(), System.currentTimeMillis() + delayMillis);
+        }
+    }
+
+    private void routeWithoutWaiting(List<DownloadLogPO> tasks) {
+        for (DownloadLogPO task : tasks) {
+            try {
+                offerToQueue(task, 0);
+            } catch (BusinessException e) {
+                failRejected(task, e);
+            }
+        }
+    }
+
+    /** Drops the pending timer entry of a cancelled task so it never reaches a lane. */
+    @Override
+    public void cancelTask(Long taskId) {
+        boolean removed = delayTimer.cancel(taskId);
+        if (journal != null) {
+            journal.ack(taskId);
+        }
+        log.info("[InMemoryTaskQueue] Task cancelled, taskId={}, timerEntryRemoved={}", taskId, removed);
+    }
+
+    private void route(DownloadLogPO task) {
+        route(task, 0);
+    }
+
+    /**
+     * Runs on the router. A full lane puts the task back on the timer with a doubling backoff; once the
+     * re-arms are used up it is failed for the retry job, as nobody is left to see the rejection.
+     */
+    private void route(DownloadLogPO task, int attempt) {
+        try {
+            offerToQueue(task, OFFER_TIMEOUT_SECONDS);
+        } catch (BusinessException e) {
+            if (attempt >= rearmAttempts) {
+                failRejected(task, e);
+                return;
+            }
+            long backoffMillis = rearmBackoffMillis << attempt;
+            log.warn("[InMemoryTaskQueue] Task not queued, re-arming timer, taskId={}, attempt={}, backoffMs={}",
+                    task.getId(), attempt + 1, backoffMillis);
+            delayTimer.schedule(task.getId(), () -> route(task, attempt + 1), backoffMillis);
+        }
+    }
+
+    private void offerToQueue(DownloadLogPO task, int timeoutSeconds) {
+        Long estimatedRows = taskSizeEstimator.estimateRows(task);
+        boolean fast = estimatedRows != null && estimatedRows <= fastLaneMaxRows;
+        FairTaskQueue taskQueue = fast ? fastQueue : bulkQueue;
+        log.info("[InMemoryTaskQueue] Routing task, taskId={}, estimatedRows={}, lane={}",
+                task.getId(), estimatedRows, fast ? FAST_LANE : BULK_LANE);
         try {
-            boolean offered = taskQueue.offer(task, OFFER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            boolean offered = taskQueue.offer(task, timeoutSeconds, TimeUnit.SECONDS);
             if (!offered) {
                 log.error("[InMemoryTaskQueue] Queue is full, task rejected. taskId={}", task.getId());
                 throw new BusinessException("Task queue is full, please retry");
@@ -75,18 +416,48 @@ public class InMemoryTaskQueueService implements SendTaskToMQService {
         }
     }
 
+    /**
+     * Marks a task that could not be queued and has no caller to report to as FAILED, so the retry job
+     * re-sends it. The journal record is only acked once the row has left NOT_EXECUTED; if the update
+     * fails it stays and the task is replayed on the next start.
+     */
+    private void failRejected(DownloadLogPO task, BusinessException cause) {
+        log.error("[InMemoryTaskQueue] Task not queued, marking it FAILED for retry, taskId={}", task.getId(), cause);
+        try {
+            LambdaUpdateWrapper<DownloadLogPO> updateWrapper = new LambdaUpdateWrapper<>();
+            updateWrapper.eq(DownloadLogPO::getId, task.getId())
+                    .eq(DownloadLogPO::getDownloadStatus, DownloadStatusEnum.NOT_EXECUTED.getCode())
+                    .set(DownloadLogPO::getDownloadStatus, DownloadStatusEnum.FAILED.getCode())
+                    .set(DownloadLogPO::getFailReason, "Not queued: " + cause.getMessage());
+            downloadLogService.update(updateWrapper);
+        } catch (Exception e) {
+            log.error("[InMemoryTaskQueue] Failed to mark rejected task FAILED, taskId={}", task.getId(), e);
+            return;
+        }
+        if (journal != null) {
+            journal.ack(task.getId());
+        }
+    }
+
     @PreDestroy
     public void shutdown() {
-        log.info("[InMemoryTaskQueue] Shutting down delay scheduler...");
-        delayScheduler.shutdown();
+        log.info("[InMemoryTaskQueue] Shutting down delay timer and router...");
+        // Pending entries stay in the journal and are rescheduled on the next start.
+        int pending = delayTimer.stop();
+        router.shutdown();
+        int unrouted = 0;
         try {
-            if (!delayScheduler.awaitTermination(10, TimeUnit.SECONDS)) {
-                delayScheduler.shutdownNow();
+            if (!router.awaitTermination(10, TimeUnit.SECONDS)) {
+                unrouted = router.shutdownNow().size();
             }
         } catch (InterruptedException e) {
-            delayScheduler.shutdownNow();
+            unrouted = router.shutdownNow().size();
             Thread.currentThread().interrupt();
         }
-        log.info("[InMemoryTaskQueue] Delay scheduler shutdown completed");
+        log.info("[InMemoryTaskQueue] Delay timer and router shutdown completed, pendingTimers={}, unrouted={}", pending, unrouted);
+        if (journal != null) {
+            journalFlusher.shutdownNow();
+            journal.close();
+        }
     }
 }
@@ -1,26 +1,202 @@
 package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
 
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
+import com.seeho.downloadcenter.base.enums.DownloadStatusEnum;
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import com.seeho.downloadcenter.base.mq.MQTopicConstants;
 import com.seeho.downloadcenter.domain.dotask.sendtask.SendTaskToMQService;
+import com.seeho.downloadcenter.domain.dotask.sendtask.transport.MQTransport;
+import com.seeho.downloadcenter.domain.dotask.sendtask.transport.TaskMessage;
+import com.seeho.downloadcenter.domain.utils.JsonUtil;
+import com.seeho.downloadcenter.domain.utils.MessageKeyUtils;
+import com.seeho.downloadcenter.persistence.IService.DownloadLogService;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
-// TODO: RocketMQ integration removed - need to implement MQ producer if needed
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * Placeholder for the RocketMQ implementation.
- * Currently disabled until the messaging integration is restored.
+ * Producer for {@code download.task.queue.mode=mq}. {@link #sendTaskToMQ} only buffers the task; a flusher
+ * thread sends the buffer through {@link MQTransport} in batches of up to {@code batch-size}, waiting at
+ * most {@code linger-ms} to fill one. Each message carries the task as JSON, keyed by its messageKey and
+ * delayed by its type's {@link DownloadRefServiceEnum#getTimeout()}. A batch the broker rejects is retried
+ * {@code send-retries} times, then its tasks are marked {@code SEND_FAILED} for the retry job.
  */
 @Slf4j
 @Service
 @ConditionalOnProperty(name = "download.task.queue.mode", havingValue = "mq", matchIfMissing = false)
-public class SendTaskToMQServiceImpl implements SendTaskToMQService {
+public class SendTaskToMQServiceImpl implements SendTaskToMQService, InitializingBean, DisposableBean {
+
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+
+    @Resource
+    private MQTransport mqTransport;
+
+    @Resource
+    private DownloadLogService downloadLogService;
+
+    @Value("${download.task.queue.mq.producer.batch-size:100}")
+    private int batchSize;
+
+    @Value("${download.task.queue.mq.producer.linger-ms:20}")
+    private long lingerMillis;
+
+    @Value("${download.task.queue.mq.producer.buffer-size:10000}")
+    private int bufferSize;
+
+    @Value("${download.task.queue.mq.producer.send-retries:3}")
+    private int sendRetries;
+
+    private BlockingQueue<DownloadLogPO> buffer;
+
+    private ExecutorService flusherExecutor;
+
+    /** Batches handed to the transport and not yet completed. */
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.flusherExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "MQ-TaskProducer"));
+        flusherExecutor.submit(this::flushLoop);
+        log.info("[SendTaskToMQService] Producer started, batchSize={}, lingerMs={}, bufferSize={}",
+                batchSize, lingerMillis, bufferSize);
+    }
 
     @Override
     public void sendTaskToMQ(DownloadLogPO downloadLogPO) {
-        // TODO: RocketMQ integration removed - need to implement MQ producer if needed
-        log.warn("[SendTaskToMQService] RocketMQ integration removed, task will not be sent to MQ. taskId={}",
-                downloadLogPO != null ? downloadLogPO.getId() : "null");
-        throw new UnsupportedOperationException("RocketMQ integration is not available. Please use memory queue mode.");
+        if (!running) {
+            throw new BusinessException("MQ producer is shutting down, taskId=" + downloadLogPO.getId());
+        }
+        if (!buffer.offer(downloadLogPO)) {
+            throw new BusinessException("MQ producer buffer is full, taskId=" + downloadLogPO.getId());
+        }
+        log.debug("[SendTaskToMQService] Task buffered, taskId={}, messageKey={}", downloadLogPO.getId(),
+                MessageKeyUtils.of(downloadLogPO));
+    }
+
+    private void flushLoop() {
+        while (running || !buffer.isEmpty()) {
+            try {
+                DownloadLogPO first = buffer.poll(lingerMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<DownloadLogPO> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (batch.size() < batchSize) {
+                    if (buffer.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    DownloadLogPO next = remaining > 0 ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                send(batch, 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("[SendTaskToMQService] Flush failed", e);
+            }
+        }
+        log.info("[SendTaskToMQService] Flusher stopped, buffered={}", buffer.size());
+    }
+
+    private void send(List<DownloadLogPO> batch, int attempt) {
+        List<TaskMessage> messages = new ArrayList<>(batch.size());
+        for (DownloadLogPO task : batch) {
+            messages.add(toMessage(task));
+        }
+        inFlightBatches.incrementAndGet();
+        CompletableFuture<Void> future;
+        try {
+            future = mqTransport.sendBatch(messages);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((ignored, error) -> {
+            try {
+                if (error == null) {
+                    log.info("[SendTaskToMQService] Batch sent, size={}, firstTaskId={}", batch.size(), batch.get(0).getId());
+                } else if (attempt < sendRetries) {
+                    long backoffMillis = RETRY_BACKOFF_MILLIS << attempt;
+                    log.warn("[SendTaskToMQService] Batch send failed, retrying in {}ms, size={}, attempt={}",
+                            backoffMillis, batch.size(), attempt + 1, error);
+                    CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS)
+                            .execute(() -> send(batch, attempt + 1));
+                } else {
+                    log.error("[SendTaskToMQService] Batch send failed after {} retries, size={}", sendRetries, batch.size(), error);
+                    markSendFailed(batch, error);
+                }
+            } finally {
+                inFlightBatches.decrementAndGet();
+            }
+        });
+    }
+
+    private TaskMessage toMessage(DownloadLogPO task) {
+        Long timeoutSeconds = DownloadRefServiceEnum.matchDownloadType(task.getDownloadType()).getTimeout();
+        TaskMessage message = new TaskMessage();
+        message.setTopic(MQTopicConstants.DOWNLOAD_TASK_TOPIC);
+        message.setKey(MessageKeyUtils.of(task));
+        message.setBody(JsonUtil.toJson(task));
+        message.setDelayMillis(timeoutSeconds == null ? 0 : TimeUnit.SECONDS.toMillis(Math.max(timeoutSeconds, 0)));
+        return message;
+    }
+
+    /** Same outcome as a synchronous send failure at task creation; only tasks still pending are touched. */
+    private void markSendFailed(List<DownloadLogPO> batch, Throwable error) {
+        for (DownloadLogPO task : batch) {
+            try {
+                LambdaUpdateWrapper<DownloadLogPO> updateWrapper = new LambdaUpdateWrapper<>();
+                updateWrapper.eq(DownloadLogPO::getId, task.getId())
+                        .eq(DownloadLogPO::getDownloadStatus, DownloadStatusEnum.NOT_EXECUTED.getCode())
+                        .set(DownloadLogPO::getDownloadStatus, DownloadStatusEnum.SEND_FAILED.getCode())
+                        .set(DownloadLogPO::getFailReason, "Message send failed: " + error.getMessage());
+                downloadLogService.update(updateWrapper);
+            } catch (Exception e) {
+                log.error("[SendTaskToMQService] Failed to mark task SEND_FAILED, taskId={}", task.getId(), e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        log.info("[SendTaskToMQService] Shutting down producer, buffered={}", buffer.size());
+        running = false;
+        flusherExecutor.shutdown();
+        try {
+            if (!flusherExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("[SendTaskToMQService] Flusher did not terminate in time, forcing shutdown...");
+                flusherExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusherExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        log.info("[SendTaskToMQService] Producer shutdown completed, unsent={}, inFlightBatches={}",
+                buffer.size(), inFlightBatches.get());
     }
 }
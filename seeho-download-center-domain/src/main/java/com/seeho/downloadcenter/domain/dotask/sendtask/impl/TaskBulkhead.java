@@ -0,0 +1,161 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import com.seeho.downloadcenter.base.model.TaskBulkheadDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Per-type concurrency limits for tasks on this node, so one slow upstream cannot occupy every consumer.
+ * Limits default to {@link DownloadRefServiceEnum#getMaxConcurrency()} and are overridden with
+ * {@code download.task.bulkhead.max-concurrency}, e.g. {@code DOWNLOAD_ZTO_BILLS:1}; zero means unlimited.
+ * No mode waits for a permit: {@link FairTaskQueue} passes over a type at its limit, db mode leaves
+ * {@link #saturatedTypes()} out of its claims, and mq mode hands the message back for redelivery.
+ * The consumer releases the permit when the task finishes. Each deferral starts or extends a
+ * starvation episode that is reported by {@link #snapshot()}.
+ */
+@Slf4j
+@Component
+public class TaskBulkhead {
+
+    @Value("${download.task.bulkhead.max-concurrency:}")
+    private String maxConcurrency;
+
+    /** Maximum concurrent tasks per download type; zero or less means unlimited. */
+    private ToIntFunction<String> limits;
+    private final Map<String, TypeBulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final List<Runnable> releaseListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        Map<String, Integer> overrides = InMemoryTaskQueueService.parseWeights(maxConcurrency);
+        this.limits = type -> overrides.getOrDefault(type, defaultMaxConcurrency(type));
+        log.info("[TaskBulkhead] Initialized, maxConcurrency={}", overrides);
+    }
+
+    private static int defaultMaxConcurrency(String downloadType) {
+        try {
+            Integer limit = DownloadRefServiceEnum.matchDownloadType(downloadType).getMaxConcurrency();
+            return limit == null ? 0 : limit;
+        } catch (BusinessException e) {
+            return 0;
+        }
+    }
+
+    /** Takes a permit for the type without waiting; {@code false} when the type is at its limit. */
+    public boolean tryAcquire(String downloadType) {
+        return bulkheadOf(downloadType).tryAcquire();
+    }
+
+    /** Types with no free permit right now. */
+    public List<String> saturatedTypes() {
+        List<String> saturated = new ArrayList<>();
+        for (TypeBulkhead bulkhead : bulkheads.values()) {
+            if (bulkhead.permits != null && bulkhead.permits.availablePermits() == 0) {
+                saturated.add(bulkhead.downloadType);
+            }
+        }
+        return saturated;
+    }
+
+    /** Returns the permit of a finished task and wakes queues holding back tasks of its type. */
+    public void release(String downloadType) {
+        bulkheadOf(downloadType).release();
+        for (Runnable listener : releaseListeners) {
+            listener.run();
+        }
+    }
+
+    /** Records that a task of the type was deferred because the type was at its limit. */
+    public void recordDeferred(String downloadType) {
+        bulkheadOf(downloadType).markStarved();
+    }
+
+    public void addReleaseListener(Runnable listener) {
+        releaseListeners.add(listener);
+    }
+
+    public List<TaskBulkheadDTO> snapshot() {
+        long now = System.nanoTime();
+        List<TaskBulkheadDTO> rows = new ArrayList<>();
+        for (TypeBulkhead bulkhead : bulkheads.values()) {
+            long starvedSince = bulkhead.starvedSinceNanos;
+            long starvedNanos = starvedSince == 0 ? 0 : now - starvedSince;
+            TaskBulkheadDTO row = new TaskBulkheadDTO();
+            row.setDownloadType(bulkhead.downloadType);
+            row.setMaxConcurrency(bulkhead.limit);
+            row.setRunning(bulkhead.running.intValue());
+            row.setStarvations(bulkhead.starvations.get());
+            row.setStarvedMillis(TimeUnit.NANOSECONDS.toMillis(starvedNanos));
+            row.setMaxStarvedMillis(TimeUnit.NANOSECONDS.toMillis(Math.max(bulkhead.maxStarvedNanos.get(), starvedNanos)));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private TypeBulkhead bulkheadOf(String downloadType) {
+        return bulkheads.computeIfAbsent(downloadType, type -> new TypeBulkhead(type, Math.max(limits.applyAsInt(type), 0)));
+    }
+
+    private static final class TypeBulkhead {
+
+        private final String downloadType;
+        private final int limit;
+        /** {@code null} when the type is unlimited. */
+        private final Semaphore permits;
+        private final AtomicLong running = new AtomicLong();
+        private final AtomicLong starvations = new AtomicLong();
+        private final AtomicLong maxStarvedNanos = new AtomicLong();
+        private volatile long starvedSinceNanos;
+
+        private TypeBulkhead(String downloadType, int limit) {
+            this.downloadType = downloadType;
+            this.limit = limit;
+            this.permits = limit > 0 ? new Semaphore(limit) : null;
+        }
+
+        private boolean tryAcquire() {
+            if (permits != null && !permits.tryAcquire()) {
+                return false;
+            }
+            running.incrementAndGet();
+            endStarvation();
+            return true;
+        }
+
+        private void release() {
+            running.decrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+
+        private synchronized void markStarved() {
+            if (starvedSinceNanos == 0) {
+                starvedSinceNanos = System.nanoTime();
+                starvations.incrementAndGet();
+            }
+        }
+
+        private synchronized void endStarvation() {
+            if (starvedSinceNanos != 0) {
+                long starvedNanos = System.nanoTime() - starvedSinceNanos;
+                maxStarvedNanos.accumulateAndGet(starvedNanos, Math::max);
+                starvedSinceNanos = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only journal of queued tasks on memory-mapped segment files, so queued and delayed tasks survive
+ * a restart. Each record is a fixed 32 bytes: sequence, task id, the time the task becomes available, a
+ * checksum and the record type. Finishing a task appends an ack record; the oldest still-pending enqueue
+ * sequence is the consumer offset, which {@link #flush()} persists before deleting segments that lie
+ * entirely below it. {@link #recover()} replays the records from the offset on and returns the tasks that
+ * were never acked.
+ * <p>
+ * Appends are plain writes into the mapped page cache and survive a process crash; {@link #flush()} forces
+ * them to disk so a machine crash loses at most one flush interval.
+ */
+@Slf4j
+public class TaskJournal implements Closeable {
+
+    private static final int RECORD_BYTES = 32;
+    private static final int MAGIC = 0x5EE0DC01;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String OFFSET_FILE = "consumer.offset";
+    private static final int TYPE_ENQUEUE = 1;
+    private static final int TYPE_ACK = 2;
+
+    private final Path dir;
+    private final long segmentBytes;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** Segment files by the sequence of their first record. */
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<Long> pendingSeqs = new ConcurrentSkipListSet<>();
+    private final Map<Long, Long> pendingByTask = new ConcurrentHashMap<>();
+
+    private MappedByteBuffer offsetBuffer;
+    private MappedByteBuffer active;
+    private long nextSeq = 1;
+
+    /** @param segmentBytes size of each segment file, rounded down to whole records */
+    public TaskJournal(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = Math.max(segmentBytes / RECORD_BYTES, 1) * RECORD_BYTES;
+    }
+
+    /**
+     * Opens the journal and returns the records from the stored offset on, oldest first, keeping only the
+     * latest record of a task journaled more than once. Must be called once, before any append.
+     */
+    public List<Entry> recover() throws IOException {
+        Files.createDirectories(dir);
+        try (FileChannel channel = FileChannel.open(dir.resolve(OFFSET_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.offsetBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        long offset = offsetBuffer.getLong(0);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+
+        List<Entry> records = new ArrayList<>();
+        long maxSeq = 0;
+        for (Path file : segments.values()) {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            while (buffer.remaining() >= RECORD_BYTES) {
+                long seq = buffer.getLong();
+                long taskId = buffer.getLong();
+                long availableAt = buffer.getLong();
+                int checksum = buffer.getInt();
+                int type = buffer.getInt();
+                if (seq <= 0 || checksum != checksum(seq, taskId, availableAt, type)) {
+                    // Unwritten tail of the segment that was active when the process stopped.
+                    break;
+                }
+                maxSeq = Math.max(maxSeq, seq);
+                if (seq < offset) {
+                    continue;
+                }
+                if (type == TYPE_ENQUEUE) {
+                    records.add(new Entry(seq, taskId, availableAt));
+                    track(seq, taskId);
+                } else {
+                    untrack(taskId);
+                }
+            }
+        }
+        this.nextSeq = Math.max(Math.max(maxSeq + 1, offset), 1);
+        roll();
+
+        List<Entry> recovered = new ArrayList<>();
+        for (Entry record : records) {
+            if (Long.valueOf(record.getSeq()).equals(pendingByTask.get(record.getTaskId()))) {
+                recovered.add(record);
+            }
+        }
+        log.info("[TaskJournal] Recovered, dir={}, offset={}, segments={}, records={}, pending={}",
+                dir, offset, segments.size(), records.size(), recovered.size());
+        return recovered;
+    }
+
+    /** Journals a queued task; a later record of the same task supersedes the earlier one. */
+    public long append(long taskId, long availableAtMillis) {
+        writeLock.lock();
+        try {
+            long seq = write(TYPE_ENQUEUE, taskId, availableAtMillis);
+            track(seq, taskId);
+            return seq;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Records that the task has left the queue; a no-op for tasks that are not pending. */
+    public void ack(long taskId) {
+        writeLock.lock();
+        try {
+            if (untrack(taskId)) {
+                write(TYPE_ACK, taskId, 0L);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int pendingCount() {
+        return pendingSeqs.size();
+    }
+
+    /** Forces appended records to disk, persists the consumer offset and deletes fully consumed segments. */
+    public void flush() {
+        MappedByteBuffer segment;
+        long lowWater;
+        writeLock.lock();
+        try {
+            segment = active;
+            // Under the lock so a sequence handed out but not yet tracked cannot be skipped.
+            Long oldest = pendingSeqs.isEmpty() ? null : pendingSeqs.first();
+            lowWater = oldest != null ? oldest : nextSeq;
+        } finally {
+            writeLock.unlock();
+        }
+        segment.force();
+        offsetBuffer.putLong(0, lowWater);
+        offsetBuffer.force();
+
+        Iterator<Map.Entry<Long, Path>> iterator = segments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Path> entry = iterator.next();
+            Long nextFirst = segments.higherKey(entry.getKey());
+            if (nextFirst == null || nextFirst > lowWater) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.getValue());
+                iterator.remove();
+                log.debug("[TaskJournal] Segment deleted, file={}", entry.getValue());
+            } catch (IOException e) {
+                log.warn("[TaskJournal] Failed to delete segment, file={}", entry.getValue(), e);
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        log.info("[TaskJournal] Closed, dir={}, pending={}", dir, pendingSeqs.size());
+    }
+
+    private long write(int type, long taskId, long availableAtMillis) {
+        try {
+            if (active.remaining() < RECORD_BYTES) {
+                roll();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to roll task journal segment", e);
+        }
+        long seq = nextSeq++;
+        active.putLong(seq)
+                .putLong(taskId)
+                .putLong(availableAtMillis)
+                .putInt(checksum(seq, taskId, availableAtMillis, type))
+                .putInt(type);
+        return seq;
+    }
+
+    private boolean untrack(long taskId) {
+        Long seq = pendingByTask.remove(taskId);
+        if (seq == null) {
+            return false;
+        }
+        pendingSeqs.remove(seq);
+        return true;
+    }
+
+    private void track(long seq, long taskId) {
+        pendingSeqs.add(seq);
+        Long previous = pendingByTask.put(taskId, seq);
+        if (previous != null) {
+            pendingSeqs.remove(previous);
+        }
+    }
+
+    /** Starts a new segment at the next sequence; the previous one is forced first. */
+    private void roll() throws IOException {
+        if (active != null) {
+            active.force();
+        }
+        Path file = dir.resolve(String.format("%020d%s", nextSeq, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segments.put(nextSeq, file);
+        log.debug("[TaskJournal] Segment opened, file={}", file);
+    }
+
+    private static int checksum(long seq, long taskId, long availableAt, int type) {
+        long mixed = seq * 0x9E3779B97F4A7C15L ^ taskId * 0xC2B2AE3D27D4EB4FL ^ availableAt ^ (long) type << 56;
+        return (int) (mixed ^ (mixed >>> 32)) ^ MAGIC;
+    }
+
+    /** One journaled task. */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        private final long seq;
+
+        private final long taskId;
+
+        /** Epoch millis at which the task may be dispatched. */
+        private final long availableAtMillis;
+    }
+}
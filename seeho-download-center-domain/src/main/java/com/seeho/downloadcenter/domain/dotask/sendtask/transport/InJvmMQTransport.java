@@ -0,0 +1,199 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.transport;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broker stand-in that keeps topics in this JVM, for single-node deployments and for running the mq mode
+ * end to end without a broker. Each topic is a delay queue consumed by one group; a message the listener
+ * throws on is redelivered after {@code redelivery-delay-ms}, doubling per attempt, and dropped as a dead
+ * letter after {@code max-reconsume-times}. Nothing is persisted: messages still queued at shutdown are lost.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${download.task.queue.mode:memory}' == 'mq' and '${download.task.queue.mq.transport:in-jvm}' == 'in-jvm'")
+public class InJvmMQTransport implements MQTransport, DisposableBean {
+
+    private static final long POLL_MILLIS = 500;
+
+    /** Redelivery delay stops doubling after this many attempts. */
+    private static final int MAX_BACKOFF_SHIFT = 6;
+
+    @Value("${download.task.queue.mq.max-reconsume-times:16}")
+    private int maxReconsumeTimes;
+
+    @Value("${download.task.queue.mq.in-jvm.redelivery-delay-ms:10000}")
+    private long redeliveryDelayMillis;
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+
+    private final List<ExecutorService> consumerExecutors = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong acked = new AtomicLong();
+
+    private final AtomicLong redelivered = new AtomicLong();
+
+    private final AtomicLong deadLetters = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    @Override
+    public CompletableFuture<Void> sendBatch(List<TaskMessage> messages) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("In-JVM transport is shut down"));
+        }
+        long now = System.nanoTime();
+        for (TaskMessage message : messages) {
+            TaskMessage copy = new TaskMessage();
+            copy.setTopic(message.getTopic());
+            copy.setKey(message.getKey());
+            copy.setBody(message.getBody());
+            copy.setDelayMillis(message.getDelayMillis());
+            topicOf(message.getTopic()).queue.put(new Envelope(copy,
+                    now + TimeUnit.MILLISECONDS.toNanos(Math.max(message.getDelayMillis(), 0))));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void subscribe(String topic, String group, int parallelism, TaskMessageListener listener) {
+        Topic queue = topicOf(topic);
+        synchronized (queue) {
+            if (queue.group != null) {
+                throw new IllegalStateException("Topic " + topic + " is already consumed by group " + queue.group);
+            }
+            queue.group = group;
+        }
+        int threads = Math.max(parallelism, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, namedThreads("InJvmMQ-" + group + "-"));
+        consumerExecutors.add(executor);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> consumeLoop(queue, listener));
+        }
+        log.info("[InJvmMQTransport] Subscribed, topic={}, group={}, parallelism={}", topic, group, threads);
+    }
+
+    private Topic topicOf(String topic) {
+        return topics.computeIfAbsent(topic, Topic::new);
+    }
+
+    private void consumeLoop(Topic topic, TaskMessageListener listener) {
+        while (running) {
+            Envelope envelope;
+            try {
+                envelope = topic.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (envelope == null) {
+                continue;
+            }
+            TaskMessage message = envelope.message;
+            try {
+                listener.onMessage(message);
+                acked.incrementAndGet();
+            } catch (Exception e) {
+                redeliver(topic, message, e);
+            }
+        }
+    }
+
+    private void redeliver(Topic topic, TaskMessage message, Exception cause) {
+        int attempt = message.getReconsumeTimes() + 1;
+        if (attempt > maxReconsumeTimes) {
+            deadLetters.incrementAndGet();
+            log.error("[InJvmMQTransport] Message dropped after {} redeliveries, topic={}, key={}",
+                    maxReconsumeTimes, topic.name, message.getKey(), cause);
+            return;
+        }
+        message.setReconsumeTimes(attempt);
+        long delayMillis = redeliveryDelayMillis << Math.min(attempt - 1, MAX_BACKOFF_SHIFT);
+        topic.queue.put(new Envelope(message, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis)));
+        redelivered.incrementAndGet();
+        log.warn("[InJvmMQTransport] Consume failed, redelivering in {}ms, topic={}, key={}, attempt={}",
+                delayMillis, topic.name, message.getKey(), attempt, cause);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(false);
+            return thread;
+        };
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        log.info("[InJvmMQTransport] Shutting down transport...");
+        running = false;
+        for (ExecutorService executor : consumerExecutors) {
+            executor.shutdown();
+        }
+        for (ExecutorService executor : consumerExecutors) {
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("[InJvmMQTransport] Consumers did not terminate in time, forcing shutdown...");
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        int undelivered = topics.values().stream().mapToInt(topic -> topic.queue.size()).sum();
+        log.info("[InJvmMQTransport] Transport shutdown completed, acked={}, redelivered={}, deadLetters={}, undelivered={}",
+                acked.get(), redelivered.get(), deadLetters.get(), undelivered);
+    }
+
+    private static final class Topic {
+
+        private final String name;
+        private final DelayQueue<Envelope> queue = new DelayQueue<>();
+        private String group;
+
+        private Topic(String name) {
+            this.name = name;
+        }
+    }
+
+    /** A message waiting in a topic until its delivery time. */
+    private static final class Envelope implements Delayed {
+
+        private final TaskMessage message;
+        private final long deliverAtNanos;
+
+        private Envelope(TaskMessage message, long deliverAtNanos) {
+            this.message = message;
+            this.deliverAtNanos = deliverAtNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deliverAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deliverAtNanos, ((Envelope) other).deliverAtNanos);
+        }
+    }
+}
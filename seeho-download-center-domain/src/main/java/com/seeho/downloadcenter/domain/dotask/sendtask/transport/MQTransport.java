@@ -0,0 +1,30 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.transport;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Broker SPI behind {@code download.task.queue.mode=mq}. Implementations adapt a message broker (or the
+ * in-JVM stand-in) to at-least-once delivery with per-message delay.
+ */
+public interface MQTransport {
+
+    /**
+     * Sends the messages as one batch; the future completes once the broker has accepted all of them and
+     * fails if any was rejected.
+     */
+    CompletableFuture<Void> sendBatch(List<TaskMessage> messages);
+
+    /**
+     * Starts delivering the topic's messages to {@code listener} on up to {@code parallelism} threads.
+     * A message is acked when the listener returns and redelivered later when it throws.
+     */
+    void subscribe(String topic, String group, int parallelism, TaskMessageListener listener);
+
+    /** Consumes one message; throwing leaves it unacked so the transport redelivers it. */
+    @FunctionalInterface
+    interface TaskMessageListener {
+
+        void onMessage(TaskMessage message) throws Exception;
+    }
+}
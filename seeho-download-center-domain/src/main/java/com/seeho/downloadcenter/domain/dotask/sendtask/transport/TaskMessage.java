@@ -0,0 +1,24 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.transport;
+
+import lombok.Data;
+
+/**
+ * A message exchanged through {@link MQTransport}.
+ */
+@Data
+public class TaskMessage {
+
+    private String topic;
+
+    /** Business key, the task's {@code messageKey}. */
+    private String key;
+
+    /** JSON payload. */
+    private String body;
+
+    /** Delivery is held back this long after the send; 0 delivers right away. */
+    private long delayMillis;
+
+    /** Times the message was delivered before and not acked; set by the transport. */
+    private int reconsumeTimes;
+}
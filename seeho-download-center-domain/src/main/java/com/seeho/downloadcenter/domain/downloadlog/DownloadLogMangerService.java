@@ -8,6 +8,8 @@ import com.seeho.downloadcenter.base.model.DownloadLogDTO;
 import com.seeho.downloadcenter.base.model.QueryDownloadDTO;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface DownloadLogMangerService {
@@ -15,6 +17,12 @@ public interface DownloadLogMangerService {
     /** Creates a new download/export task. */
     Long createExportTask(DownloadLogDTO downloadLogDTO);
 
+    /**
+     * Creates several tasks with one batched insert and dispatches them together after commit; returns
+     * their ids in request order.
+     */
+    List<Long> createExportTasks(List<DownloadLogDTO> downloadLogDTOs);
+
     /** Queries paged download task list for the current user. */
     PageResult<DownloadListDTO> queryExportTask(QueryDownloadDTO queryDownloadDTO);
 
@@ -25,6 +33,24 @@ public interface DownloadLogMangerService {
     /** Updates a task status with optimistic checking. */
     Boolean updateDownloadLogStatus(Long id, DownloadStatusEnum newStatus, DownloadStatusEnum desiredStatus);
 
+    /** Cancels a NOT_EXECUTED task and drops its pending dispatch; {@code false} when the status changed. */
+    Boolean cancelTask(Long id);
+
+    /**
+     * Claims up to {@code limit} published NOT_EXECUTED tasks for {@code claimToken} in db queue mode, oldest
+     * first. Claims made before {@code staleBefore}, or before the task was last made available, are taken
+     * over. Tasks of {@code excludedTypes} are left for a later claim. With {@code skipLocked} the candidates are
+     * locked with {@code FOR UPDATE SKIP LOCKED}; otherwise a conditional update decides which worker wins.
+     */
+    List<DownloadLogPO> claimPendingTasks(String claimToken, int limit, LocalDateTime staleBefore,
+                                          Collection<String> excludedTypes, boolean skipLocked);
+
+    /** Releases claims starting with {@code claimOwnerPrefix} on tasks that never started. */
+    Boolean releaseClaims(String claimOwnerPrefix);
+
+    /** Releases the claim of {@code claimOwner} on a task that never started, making it claimable right away. */
+    Boolean releaseClaim(Long id, String claimOwner);
+
 
     /** Partially updates a log entry by ID. */
     Boolean updateDLPOById(DownloadLogPO downloadLogPO);
@@ -1,5 +1,6 @@
 package com.seeho.downloadcenter.domain.downloadlog.impl;
 
+import com.baomidou.mybatisplus.core.conditions.AbstractLambdaWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
@@ -7,6 +8,7 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.seeho.downloadcenter.base.constants.JobConstants;
 import com.seeho.downloadcenter.base.constants.UserContext;
 import com.seeho.downloadcenter.base.enums.DownloadStatusEnum;
+import com.seeho.downloadcenter.base.enums.ExportFormatEnum;
 import com.seeho.downloadcenter.base.common.PageResult;
 import com.seeho.downloadcenter.domain.dotask.sendtask.SendTaskToMQService;
 import com.seeho.downloadcenter.domain.downloadlog.DownloadLogMangerService;
@@ -19,6 +21,7 @@ import com.seeho.downloadcenter.base.model.DownloadListDTO;
 import com.seeho.downloadcenter.base.model.DownloadLogDTO;
 import com.seeho.downloadcenter.base.model.QueryDownloadDTO;
 import com.seeho.downloadcenter.persistence.IService.DownloadLogService;
+import com.seeho.downloadcenter.persistence.mapper.DownloadLogMapper;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -30,8 +33,13 @@ import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Domain service that orchestrates download task lifecycle.
@@ -46,22 +54,17 @@ public class DownloadLogMangerServiceImpl implements DownloadLogMangerService {
     @Resource
     private SendTaskToMQService sendTaskToMQService;
 
+    @Resource
+    private DownloadLogMapper downloadLogMapper;
+
     /**
      * Persists a new download task and triggers the async pipeline.
      */
     @Transactional
     @Override
     public Long createExportTask(DownloadLogDTO downloadLogDTO) {
-        // TODO replace the demo user ID once authentication is wired.
-        downloadLogDTO.setUserId(UserContext.userId);
-        DownloadLogPO downloadLogPO = BeanUtil.copy(downloadLogDTO, DownloadLogPO.class);
-        downloadLogPO.setTitles(JsonUtil.toJson(downloadLogDTO.getTitles()));
-        downloadLogPO.setDownloadType(downloadLogDTO.getDownloadType().getDlCode());
-
-        downloadLogPO.setDownloadStatus(DownloadStatusEnum.NOT_EXECUTED.getCode());
-
-        downloadLogPO.setCreateUserId(UserContext.userId);
-        downloadLogPO.setUpdateUserId(UserContext.userId);
+        DownloadLogPO downloadLogPO = toNewTask(downloadLogDTO);
+        sendTaskToMQService.stageTask(downloadLogPO);
 
         downloadLogService.save(downloadLogPO);
         Long logPOId = downloadLogPO.getId();
@@ -89,6 +92,65 @@ public class DownloadLogMangerServiceImpl implements DownloadLogMangerService {
         return logPOId;
     }
 
+    /**
+     * Inserts all tasks in one JDBC batch. The message key is only set on the in-memory POs, not written
+     * back: it is a function of type and id, and {@link MessageKeyUtils#of} derives it for rows read later.
+     */
+    @Transactional
+    @Override
+    public List<Long> createExportTasks(List<DownloadLogDTO> downloadLogDTOs) {
+        List<DownloadLogPO> tasks = new ArrayList<>(downloadLogDTOs.size());
+        for (DownloadLogDTO downloadLogDTO : downloadLogDTOs) {
+            DownloadLogPO task = toNewTask(downloadLogDTO);
+            sendTaskToMQService.stageTask(task);
+            tasks.add(task);
+        }
+        downloadLogService.saveBatch(tasks, tasks.size());
+
+        List<Long> taskIds = new ArrayList<>(tasks.size());
+        for (DownloadLogPO task : tasks) {
+            task.setMessageKey(MessageKeyUtils.generate(task.getDownloadType(), task.getId()));
+            taskIds.add(task.getId());
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                Map<Long, String> failures;
+                try {
+                    log.info("[ExportTask] Transaction committed, sending MQ messages count={}", tasks.size());
+                    failures = sendTaskToMQService.sendTasksToMQ(tasks);
+                } catch (Exception e) {
+                    log.error("[ExportTask] Failed to send MQ messages (unknown exception) count={}", tasks.size(), e);
+                    failures = new LinkedHashMap<>();
+                    for (Long taskId : taskIds) {
+                        failures.put(taskId, e.getMessage());
+                    }
+                }
+                failures.forEach((taskId, errorMessage) -> updateTaskStatusToSendFailed(taskId, errorMessage));
+                log.info("[ExportTask] MQ messages sent count={}, failed={}", tasks.size() - failures.size(), failures.size());
+            }
+        });
+
+        return taskIds;
+    }
+
+    private DownloadLogPO toNewTask(DownloadLogDTO downloadLogDTO) {
+        // TODO replace the demo user ID once authentication is wired.
+        downloadLogDTO.setUserId(UserContext.userId);
+        DownloadLogPO downloadLogPO = BeanUtil.copy(downloadLogDTO, DownloadLogPO.class);
+        downloadLogPO.setTitles(JsonUtil.toJson(downloadLogDTO.getTitles()));
+        downloadLogPO.setDownloadType(downloadLogDTO.getDownloadType().getDlCode());
+        downloadLogPO.setExportFormat(Optional.ofNullable(downloadLogDTO.getExportFormat())
+                .orElse(ExportFormatEnum.XLSX).getCode());
+
+        downloadLogPO.setDownloadStatus(DownloadStatusEnum.NOT_EXECUTED.getCode());
+
+        downloadLogPO.setCreateUserId(UserContext.userId);
+        downloadLogPO.setUpdateUserId(UserContext.userId);
+        return downloadLogPO;
+    }
+
     private void updateTaskStatusToSendFailed(Long taskId, String errorMessage) {
         try {
             DownloadLogPO updatePO = new DownloadLogPO();
@@ -119,7 +181,14 @@ public class DownloadLogMangerServiceImpl implements DownloadLogMangerService {
     public DownloadLogPO queryDownloadLogByMessageKey(String messageKey) {
         LambdaQueryWrapper<DownloadLogPO> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(DownloadLogPO::getMessageKey, messageKey);
-        return downloadLogService.getOne(wrapper);
+        DownloadLogPO task = downloadLogService.getOne(wrapper);
+        if (task != null) {
+            return task;
+        }
+        // Tasks created in bulk do not store their key.
+        Long taskId = MessageKeyUtils.parseTaskId(messageKey);
+        task = taskId == null ? null : downloadLogService.getById(taskId);
+        return task != null && messageKey.equals(MessageKeyUtils.of(task)) ? task : null;
     }
 
     @Override
@@ -132,6 +201,87 @@ public class DownloadLogMangerServiceImpl implements DownloadLogMangerService {
         return downloadLogService.update(updateWrapper);
     }
 
+    @Override
+    public Boolean cancelTask(Long id) {
+        Boolean updated = updateDownloadLogStatus(id, DownloadStatusEnum.CANCELLED, DownloadStatusEnum.NOT_EXECUTED);
+        if (Boolean.TRUE.equals(updated)) {
+            sendTaskToMQService.cancelTask(id);
+        }
+        return updated;
+    }
+
+    @Transactional
+    @Override
+    public List<DownloadLogPO> claimPendingTasks(String claimToken, int limit, LocalDateTime staleBefore,
+                                                 Collection<String> excludedTypes, boolean skipLocked) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> candidateIds;
+        if (skipLocked) {
+            candidateIds = downloadLogMapper.selectClaimableIdsSkipLocked(
+                    DownloadStatusEnum.NOT_EXECUTED.getCode(), now, staleBefore, excludedTypes, limit);
+        } else {
+            LambdaQueryWrapper<DownloadLogPO> wrapper = new LambdaQueryWrapper<>();
+            wrapper.select(DownloadLogPO::getId)
+                    .eq(DownloadLogPO::getDownloadStatus, DownloadStatusEnum.NOT_EXECUTED.getCode())
+                    .le(DownloadLogPO::getAvailableTime, now)
+                    .notIn(!excludedTypes.isEmpty(), DownloadLogPO::getDownloadType, excludedTypes)
+                    .and(claim -> claimable(claim, staleBefore))
+                    .orderByAsc(DownloadLogPO::getAvailableTime, DownloadLogPO::getId)
+                    .last("LIMIT " + limit);
+            candidateIds = downloadLogService.listObjs(wrapper, id -> ((Number) id).longValue());
+        }
+        if (candidateIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Re-checks the claim conditions so a concurrent worker that won a candidate keeps it.
+        LambdaUpdateWrapper<DownloadLogPO> claimWrapper = new LambdaUpdateWrapper<>();
+        claimWrapper.in(DownloadLogPO::getId, candidateIds)
+                .eq(DownloadLogPO::getDownloadStatus, DownloadStatusEnum.NOT_EXECUTED.getCode())
+                .and(claim -> claimable(claim, staleBefore))
+                .set(DownloadLogPO::getClaimOwner, claimToken)
+                .set(DownloadLogPO::getClaimTime, now);
+        if (!downloadLogService.update(claimWrapper)) {
+            return List.of();
+        }
+
+        LambdaQueryWrapper<DownloadLogPO> claimedWrapper = new LambdaQueryWrapper<>();
+        claimedWrapper.eq(DownloadLogPO::getClaimOwner, claimToken)
+                .orderByAsc(DownloadLogPO::getAvailableTime, DownloadLogPO::getId);
+        return downloadLogService.list(claimedWrapper);
+    }
+
+    /**
+     * Unclaimed, claimed before {@code staleBefore}, or claimed by an earlier attempt: a retried task is made
+     * available again after its old claim, which therefore no longer holds it.
+     */
+    private static <W extends AbstractLambdaWrapper<DownloadLogPO, W>> void claimable(W claim, LocalDateTime staleBefore) {
+        claim.isNull(DownloadLogPO::getClaimOwner)
+                .or().lt(DownloadLogPO::getClaimTime, staleBefore)
+                .or().apply("claim_time < available_time");
+    }
+
+    @Override
+    public Boolean releaseClaims(String claimOwnerPrefix) {
+        LambdaUpdateWrapper<DownloadLogPO> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.likeRight(DownloadLogPO::getClaimOwner, claimOwnerPrefix)
+                .eq(DownloadLogPO::getDownloadStatus, DownloadStatusEnum.NOT_EXECUTED.getCode())
+                .set(DownloadLogPO::getClaimOwner, null)
+                .set(DownloadLogPO::getClaimTime, null);
+        return downloadLogService.update(updateWrapper);
+    }
+
+    @Override
+    public Boolean releaseClaim(Long id, String claimOwner) {
+        LambdaUpdateWrapper<DownloadLogPO> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(DownloadLogPO::getId, id)
+                .eq(DownloadLogPO::getClaimOwner, claimOwner)
+                .eq(DownloadLogPO::getDownloadStatus, DownloadStatusEnum.NOT_EXECUTED.getCode())
+                .set(DownloadLogPO::getClaimOwner, null)
+                .set(DownloadLogPO::getClaimTime, null);
+        return downloadLogService.update(updateWrapper);
+    }
+
     @Override
     public Boolean updateDLPOById(DownloadLogPO downloadLogPO) {
         Assert.notNull(downloadLogPO.getId(), "Download log ID cannot be null");
@@ -182,6 +332,7 @@ public class DownloadLogMangerServiceImpl implements DownloadLogMangerService {
 
         task.setDownloadStatus(DownloadStatusEnum.NOT_EXECUTED.getCode());
         task.setRetryCount(task.getRetryCount() + 1);
+        sendTaskToMQService.stageTask(task);
         downloadLogService.update(task, updateWrapper);
 
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -1,6 +1,7 @@
 package com.seeho.downloadcenter.domain.job;
 
 import com.seeho.downloadcenter.base.enums.DownloadStatusEnum;
+import com.seeho.downloadcenter.domain.dotask.process.ExportCheckpointStore;
 import com.seeho.downloadcenter.domain.downloadlog.DownloadLogMangerService;
 import com.seeho.downloadcenter.base.model.JobQueryDTO;
 import lombok.AllArgsConstructor;
@@ -14,7 +15,7 @@ import java.util.List;
 import java.util.Optional;
 
 /**
- * Periodic job that retries failed download tasks.
+ * Periodic jobs that retry failed or undispatched download tasks and clear out stale export checkpoints.
  */
 @Slf4j
 @Component
@@ -22,17 +23,24 @@ import java.util.Optional;
 public class TaskJob {
 
     private final DownloadLogMangerService downloadLogMangerService;
+    private final ExportCheckpointStore exportCheckpointStore;
 
     @Scheduled(cron = "${download.task.retry.cron:0 */5 * * * ?}")
     public void callFailTaskJob() {
         JobQueryDTO queryDTO = new JobQueryDTO();
         queryDTO.setStartTime(LocalDateTime.now().minusHours(1));
         queryDTO.setEndTime(LocalDateTime.now());
-        queryDTO.setStatusList(List.of(DownloadStatusEnum.FAILED));
+        queryDTO.setStatusList(List.of(DownloadStatusEnum.FAILED, DownloadStatusEnum.SEND_FAILED));
 
         Optional.ofNullable(downloadLogMangerService.queryToTaskList(queryDTO))
                 .orElse(Collections.emptyList())
                 .forEach(downloadLogMangerService::tryDoTaskAgain);
         log.info("[TaskJob] Retry job completed");
     }
+
+    @Scheduled(cron = "${download.export.checkpoint.purge-cron:0 30 * * * ?}")
+    public void purgeExpiredCheckpoints() {
+        int purged = exportCheckpointStore.purgeExpired();
+        log.info("[TaskJob] Checkpoint purge completed, purged={}", purged);
+    }
 }
@@ -0,0 +1,88 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.alibaba.excel.annotation.ExcelIgnore;
+import com.alibaba.excel.annotation.ExcelIgnoreUnannotated;
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.seeho.downloadcenter.base.exception.BusinessException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Column layout of an EasyExcel-annotated DTO for writers that do not go through EasyExcel.
+ * Follows the same rules as the workbook head: {@link ExcelIgnore} and {@link ExcelIgnoreUnannotated}
+ * drop fields, {@link ExcelProperty#index()} and {@link ExcelProperty#order()} sort them, and the last
+ * level of {@link ExcelProperty#value()} (or the field name) is the header.
+ */
+public final class AnnotationColumns<R> {
+
+    private final List<String> header;
+    private final List<Field> fields;
+
+    private AnnotationColumns(List<String> header, List<Field> fields) {
+        this.header = header;
+        this.fields = fields;
+    }
+
+    public static <R> AnnotationColumns<R> of(Class<R> headClass) {
+        boolean ignoreUnannotated = headClass.isAnnotationPresent(ExcelIgnoreUnannotated.class);
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> type = headClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            List<Field> declared = new ArrayList<>();
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isAnnotationPresent(ExcelIgnore.class)
+                        || (ignoreUnannotated && !field.isAnnotationPresent(ExcelProperty.class))) {
+                    continue;
+                }
+                field.setAccessible(true);
+                declared.add(field);
+            }
+            // Parent fields come first, as in the EasyExcel head.
+            fields.addAll(0, declared);
+        }
+        fields.sort(Comparator.<Field>comparingInt(AnnotationColumns::indexOf).thenComparingInt(AnnotationColumns::orderOf));
+
+        List<String> header = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            ExcelProperty property = field.getAnnotation(ExcelProperty.class);
+            String[] names = property == null ? new String[0] : property.value();
+            header.add(names.length == 0 || names[names.length - 1].isEmpty() ? field.getName() : names[names.length - 1]);
+        }
+        return new AnnotationColumns<>(header, fields);
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    /** Reads every column of a row in header order. */
+    public Function<R, List<Object>> rowMapper() {
+        return row -> {
+            List<Object> cells = new ArrayList<>(fields.size());
+            for (Field field : fields) {
+                try {
+                    cells.add(field.get(row));
+                } catch (IllegalAccessException e) {
+                    throw new BusinessException("Failed to read export column: " + field.getName(), e);
+                }
+            }
+            return cells;
+        };
+    }
+
+    private static int indexOf(Field field) {
+        ExcelProperty property = field.getAnnotation(ExcelProperty.class);
+        return property == null || property.index() < 0 ? Integer.MAX_VALUE : property.index();
+    }
+
+    private static int orderOf(Field field) {
+        ExcelProperty property = field.getAnnotation(ExcelProperty.class);
+        return property == null ? Integer.MAX_VALUE : property.order();
+    }
+}
@@ -0,0 +1,391 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes an {@code .xlsx} workbook by serializing the sheet XML itself, straight from the DTO.
+ * Cells are read one at a time through {@link ExportColumns} and encoded into a single reusable byte
+ * buffer that is streamed into the worksheet zip entry; integers, dates and plain strings are encoded
+ * without intermediate objects, so there is no per-row list and no POI row/cell model.
+ * The layout matches {@link ExcelFileWriter}: a bold head row on every sheet and a new sheet whenever
+ * the current one would exceed {@link ExcelFileWriter#MAX_ROWS_PER_SHEET} rows. Strings are written
+ * inline, dates as {@code yyyy-MM-dd[ HH:mm:ss]} text.
+ */
+@Slf4j
+public class DirectXlsxFileWriter<R> implements ExportFileWriter<R> {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /** Worst case bytes for one escaped char (a surrogate pair encodes to 4, an entity to 6). */
+    private static final int MAX_CHAR_BYTES = 6;
+
+    private static final byte[] SHEET_START = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+    private static final byte[] SHEET_END = ascii("</sheetData></worksheet>");
+    private static final byte[] ROW_START = ascii("<row>");
+    private static final byte[] ROW_END = ascii("</row>");
+    private static final byte[] EMPTY_CELL = ascii("<c/>");
+    private static final byte[] HEAD_CELL_START = ascii("<c s=\"1\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+    private static final byte[] STRING_CELL_START = ascii("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+    private static final byte[] STRING_CELL_END = ascii("</t></is></c>");
+    private static final byte[] NUMBER_CELL_START = ascii("<c><v>");
+    private static final byte[] BOOLEAN_CELL_START = ascii("<c t=\"b\"><v>");
+    private static final byte[] VALUE_CELL_END = ascii("</v></c>");
+
+    private static final String STYLES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+            + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+            + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+            + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"2\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+            + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/></cellXfs>"
+            + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles></styleSheet>";
+
+    private static final String ROOT_RELS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\""
+            + " Target=\"xl/workbook.xml\"/></Relationships>";
+
+    private final ZipOutputStream zip;
+    private final ExportColumns<R> columns;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position = 0;
+
+    private int sheetCount = 0;
+    private int currentSheetRows = 0;
+
+    public DirectXlsxFileWriter(String filePath, ExportColumns<R> columns) {
+        this.columns = columns;
+        try {
+            this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(filePath)), BUFFER_BYTES));
+        } catch (IOException e) {
+            throw new BusinessException("Failed to open export file: " + filePath, e);
+        }
+        // Throughput over ratio: xlsx output is dominated by deflate time at the default level.
+        zip.setLevel(Deflater.BEST_SPEED);
+        try {
+            startSheet();
+        } catch (RuntimeException e) {
+            try {
+                zip.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(List<R> rows) {
+        if (currentSheetRows + rows.size() > ExcelFileWriter.MAX_ROWS_PER_SHEET) {
+            log.info("[DirectXlsxFileWriter] Current sheet rows={}, exceeds limit, switching to next sheet", currentSheetRows);
+            endSheet();
+            startSheet();
+        }
+        int columnCount = columns.size();
+        for (R row : rows) {
+            writeBytes(ROW_START);
+            for (int i = 0; i < columnCount; i++) {
+                writeCell(columns.cell(row, i));
+            }
+            writeBytes(ROW_END);
+        }
+        currentSheetRows += rows.size();
+    }
+
+    @Override
+    public void close() {
+        // The file handle is released even when finishing the workbook fails.
+        try (zip) {
+            endSheet();
+            writeEntry("xl/styles.xml", STYLES);
+            writeEntry("xl/workbook.xml", workbookXml());
+            writeEntry("xl/_rels/workbook.xml.rels", workbookRelsXml());
+            writeEntry("_rels/.rels", ROOT_RELS);
+            writeEntry("[Content_Types].xml", contentTypesXml());
+        } catch (IOException e) {
+            throw new BusinessException("Failed to complete export file: " + e.getMessage(), e);
+        }
+        log.debug("[DirectXlsxFileWriter] Workbook finished, totalSheets={}, lastSheetRows={}", sheetCount, currentSheetRows);
+    }
+
+    private void startSheet() {
+        sheetCount++;
+        currentSheetRows = 0;
+        try {
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writeBytes(SHEET_START);
+        writeBytes(ROW_START);
+        for (String title : columns.getHeader()) {
+            writeBytes(HEAD_CELL_START);
+            if (title != null) {
+                writeEscaped(title);
+            }
+            writeBytes(STRING_CELL_END);
+        }
+        writeBytes(ROW_END);
+    }
+
+    private void endSheet() {
+        writeBytes(SHEET_END);
+        flushBuffer();
+        try {
+            zip.closeEntry();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCell(Object value) {
+        if (value == null) {
+            writeBytes(EMPTY_CELL);
+        } else if (value instanceof String) {
+            writeBytes(STRING_CELL_START);
+            writeEscaped((String) value);
+            writeBytes(STRING_CELL_END);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeBytes(NUMBER_CELL_START);
+            writeLong(((Number) value).longValue());
+            writeBytes(VALUE_CELL_END);
+        } else if (value instanceof LocalDateTime && isFourDigitYear(((LocalDateTime) value).getYear())) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            writeBytes(STRING_CELL_START);
+            writeDate(dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth());
+            writeByte(' ');
+            writePadded(dateTime.getHour(), 2);
+            writeByte(':');
+            writePadded(dateTime.getMinute(), 2);
+            writeByte(':');
+            writePadded(dateTime.getSecond(), 2);
+            writeBytes(STRING_CELL_END);
+        } else if (value instanceof LocalDate && isFourDigitYear(((LocalDate) value).getYear())) {
+            LocalDate date = (LocalDate) value;
+            writeBytes(STRING_CELL_START);
+            writeDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+            writeBytes(STRING_CELL_END);
+        } else if (value instanceof Boolean) {
+            writeBytes(BOOLEAN_CELL_START);
+            writeByte((Boolean) value ? '1' : '0');
+            writeBytes(VALUE_CELL_END);
+        } else if (value instanceof BigDecimal) {
+            writeNumber(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Number && Double.isFinite(((Number) value).doubleValue())) {
+            writeNumber(value.toString());
+        } else {
+            writeBytes(STRING_CELL_START);
+            writeEscaped(value.toString());
+            writeBytes(STRING_CELL_END);
+        }
+    }
+
+    private void writeNumber(String digits) {
+        writeBytes(NUMBER_CELL_START);
+        writeAscii(digits);
+        writeBytes(VALUE_CELL_END);
+    }
+
+    private static boolean isFourDigitYear(int year) {
+        return year >= 0 && year <= 9999;
+    }
+
+    private void writeDate(int year, int month, int day) {
+        writePadded(year, 4);
+        writeByte('-');
+        writePadded(month, 2);
+        writeByte('-');
+        writePadded(day, 2);
+    }
+
+    private void writePadded(int value, int width) {
+        ensureCapacity(width);
+        for (int i = position + width - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += width;
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+    }
+
+    /** UTF-8 encodes and XML-escapes {@code text} into the buffer, dropping chars XML 1.0 cannot carry. */
+    private void writeEscaped(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            ensureCapacity(MAX_CHAR_BYTES);
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '<':
+                        writeAsciiUnchecked("&lt;");
+                        break;
+                    case '>':
+                        writeAsciiUnchecked("&gt;");
+                        break;
+                    case '&':
+                        writeAsciiUnchecked("&amp;");
+                        break;
+                    default:
+                        if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                            buffer[position++] = (byte) c;
+                        }
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (!Character.isSurrogate(c) && c != 0xFFFE && c != 0xFFFF) {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Writes ASCII text of any length in buffer-sized runs. A plain BigDecimal such as {@code 1E+100000}
+     * can be longer than the whole buffer, so a single capacity check up front is not enough.
+     */
+    private void writeAscii(String text) {
+        int length = text.length();
+        int from = 0;
+        while (from < length) {
+            ensureCapacity(1);
+            int to = Math.min(length, from + buffer.length - position);
+            for (int i = from; i < to; i++) {
+                buffer[position++] = (byte) text.charAt(i);
+            }
+            from = to;
+        }
+    }
+
+    private void writeAsciiUnchecked(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void writeByte(char c) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) c;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() {
+        if (position == 0) {
+            return;
+        }
+        try {
+            zip.write(buffer, 0, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position = 0;
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private String workbookXml() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+                .append("<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"")
+                .append(" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<sheet name=\"Sheet").append(i).append("\" sheetId=\"").append(i)
+                    .append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        return xml.append("</sheets></workbook>").toString();
+    }
+
+    private String workbookRelsXml() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+                .append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<Relationship Id=\"rId").append(i)
+                    .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\"")
+                    .append(" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+        }
+        xml.append("<Relationship Id=\"rId").append(sheetCount + 1)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\"")
+                .append(" Target=\"styles.xml\"/>");
+        return xml.append("</Relationships>").toString();
+    }
+
+    private String contentTypesXml() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+                .append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+                .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+                .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+                .append("<Override PartName=\"/xl/workbook.xml\"")
+                .append(" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+                .append("<Override PartName=\"/xl/styles.xml\"")
+                .append(" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<Override PartName=\"/xl/worksheets/sheet").append(i).append(".xml\"")
+                    .append(" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return xml.append("</Types>").toString();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
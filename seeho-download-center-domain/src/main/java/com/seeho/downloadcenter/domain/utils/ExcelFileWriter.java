@@ -0,0 +1,83 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Writes an export as an {@code .xlsx} workbook through EasyExcel, switching to a new sheet
+ * whenever the current one would exceed {@link #MAX_ROWS_PER_SHEET}.
+ */
+@Slf4j
+public class ExcelFileWriter<R> implements ExportFileWriter<R> {
+
+    public static final int MAX_ROWS_PER_SHEET = 1_000_000;
+
+    private final ExcelWriter excelWriter;
+    private final IntFunction<WriteSheet> sheetFactory;
+    private final Function<List<R>, List<?>> dataConverter;
+
+    private WriteSheet currentSheet;
+    private int currentSheetIndex = 0;
+    private int currentSheetRows = 0;
+
+    private ExcelFileWriter(ExcelWriter excelWriter,
+                            IntFunction<WriteSheet> sheetFactory,
+                            Function<List<R>, List<?>> dataConverter) {
+        this.excelWriter = excelWriter;
+        this.sheetFactory = sheetFactory;
+        this.dataConverter = dataConverter;
+        this.currentSheet = sheetFactory.apply(currentSheetIndex);
+    }
+
+    /** Workbook whose head and cell formats come from the EasyExcel annotations on {@code headClass}. */
+    public static <R> ExcelFileWriter<R> forAnnotationHead(String filePath, Class<R> headClass) {
+        return new ExcelFileWriter<>(
+                EasyExcel.write(filePath, headClass).build(),
+                sheetIndex -> EasyExcel.writerSheet(sheetIndex, "Sheet" + (sheetIndex + 1)).build(),
+                batchData -> batchData
+        );
+    }
+
+    /** Workbook with a client supplied head whose cells are produced by {@code rowMapper}. */
+    public static <R> ExcelFileWriter<R> forDynamicHead(String filePath,
+                                                        List<List<String>> head,
+                                                        Function<R, List<Object>> rowMapper) {
+        return new ExcelFileWriter<>(
+                EasyExcel.write(filePath).build(),
+                sheetIndex -> EasyExcel.writerSheet(sheetIndex, "Sheet" + (sheetIndex + 1)).head(head).build(),
+                batchData -> {
+                    List<List<Object>> rows = new ArrayList<>(batchData.size());
+                    for (R dto : batchData) {
+                        rows.add(rowMapper.apply(dto));
+                    }
+                    return rows;
+                }
+        );
+    }
+
+    @Override
+    public void write(List<R> rows) {
+        if (currentSheetRows + rows.size() > MAX_ROWS_PER_SHEET) {
+            log.info("[ExcelFileWriter] Current sheet rows={}, exceeds limit, switching to next sheet", currentSheetRows);
+            currentSheetIndex++;
+            currentSheetRows = 0;
+            currentSheet = sheetFactory.apply(currentSheetIndex);
+        }
+        excelWriter.write(dataConverter.apply(rows), currentSheet);
+        currentSheetRows += rows.size();
+    }
+
+    @Override
+    public void close() {
+        excelWriter.finish();
+        log.debug("[ExcelFileWriter] Workbook finished, totalSheets={}, lastSheetRows={}",
+                currentSheetIndex + 1, currentSheetRows);
+    }
+}
@@ -1,95 +1,115 @@
 package com.seeho.downloadcenter.domain.utils;
 
-import com.alibaba.excel.EasyExcel;
-import com.alibaba.excel.ExcelWriter;
-import com.alibaba.excel.write.metadata.WriteSheet;
+import com.seeho.downloadcenter.base.enums.ExportFormatEnum;
 import com.seeho.downloadcenter.base.exception.BusinessException;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
- * Streams large exports to Excel by batching queries and switching sheets automatically.
+ * Streams large exports to disk by batching queries; XLSX switches sheets automatically, while
+ * delimited formats ({@link ExportFormatEnum#isDelimited()}) are written as one unbounded text file.
+ * Batches are written in the order the {@link ExportBatchIterator} yields them; a {@link SegmentPrefetcher}
+ * fetches the next segments in the background while the current one is written.
  */
 @Slf4j
 public class ExcelStreamWriter {
 
-    private static final int MAX_ROWS_PER_SHEET = 1_000_000;
-
-    public static <C, R> String writeBatchData(String filePathPrefix,
-                                                Class<R> headClass,
-                                                List<C> conditionList,
-                                                Function<C, List<R>> dataFetcher) {
+    /**
+     * Annotation-head export in the given format. Delimited formats take their header and columns from the
+     * same EasyExcel annotations that drive the workbook head; {@code withHeader = false} leaves the header
+     * line out of delimited files so they can be stitched behind a first part. Workbooks always carry their head.
+     */
+    public static <R> String writeBatchData(String filePathPrefix,
+                                            Class<R> headClass,
+                                            ExportBatchIterator<R> batches,
+                                            ExportFormatEnum format,
+                                            boolean withHeader) {
         return writeBatchDataInternal(
                 filePathPrefix,
-                conditionList,
-                dataFetcher,
-                filePath -> EasyExcel.write(filePath, headClass).build(),
-                sheetIndex -> EasyExcel.writerSheet(sheetIndex, "Sheet" + (sheetIndex + 1)).build(),
-                (batchData, rowMapper) -> (List<List<Object>>) (List<?>) batchData,
-                null,
+                batches,
+                format,
+                filePath -> {
+                    if (!format.isDelimited()) {
+                        return ExcelFileWriter.forAnnotationHead(filePath, headClass);
+                    }
+                    AnnotationColumns<R> columns = AnnotationColumns.of(headClass);
+                    return new CsvFileWriter<>(filePath, withHeader ? columns.getHeader() : null, columns.rowMapper(),
+                            format.getDelimiter(), format.isGzip());
+                },
                 "Annotation Mode"
         );
     }
 
-    public static <C, R> String writeDynamicWithMapper(String filePathPrefix,
-                                                        List<List<String>> head,
-                                                        List<C> conditionList,
-                                                        Function<C, List<R>> dataFetcher,
-                                                        Function<R, List<Object>> rowMapper) {
+    /**
+     * Dynamic-head export in the given format; delimited formats use the last head level as the header line.
+     * {@code withHeader = false} leaves the header line out of delimited files so they can be stitched behind
+     * a first part. Workbooks always carry their head.
+     */
+    public static <R> String writeDynamicWithMapper(String filePathPrefix,
+                                                    List<List<String>> head,
+                                                    ExportBatchIterator<R> batches,
+                                                    Function<R, List<Object>> rowMapper,
+                                                    ExportFormatEnum format,
+                                                    boolean withHeader) {
         return writeBatchDataInternal(
                 filePathPrefix,
-                conditionList,
-                dataFetcher,
-                filePath -> EasyExcel.write(filePath).build(),
-                sheetIndex -> EasyExcel.writerSheet(sheetIndex, "Sheet" + (sheetIndex + 1)).head(head).build(),
-                (batchData, mapper) -> {
-                    List<List<Object>> rows = new ArrayList<>(batchData.size());
-                    for (R dto : batchData) {
-                        rows.add(mapper.apply(dto));
+                batches,
+                format,
+                filePath -> {
+                    if (!format.isDelimited()) {
+                        return ExcelFileWriter.forDynamicHead(filePath, head, rowMapper);
+                    }
+                    List<String> header = new ArrayList<>(head.size());
+                    for (List<String> levels : head) {
+                        header.add(levels.isEmpty() ? "" : levels.get(levels.size() - 1));
                     }
-                    return rows;
+                    return new CsvFileWriter<>(filePath, withHeader ? header : null, rowMapper,
+                            format.getDelimiter(), format.isGzip());
                 },
-                rowMapper,
                 "Dynamic Mode"
         );
     }
 
-    private static <C, R> String writeBatchDataInternal(String filePathPrefix,
-                                                         List<C> conditionList,
-                                                         Function<C, List<R>> dataFetcher,
-                                                         Function<String, ExcelWriter> writerFactory,
-                                                         Function<Integer, WriteSheet> sheetFactory,
-                                                         BiFunction<List<R>, Function<R, List<Object>>, List<List<Object>>> dataConverter,
-                                                         Function<R, List<Object>> rowMapper,
-                                                         String mode) {
-        String filePath = filePathPrefix + "-" + System.currentTimeMillis() + ".xlsx";
+    /**
+     * XLSX export through {@link DirectXlsxFileWriter}, which serializes cells straight from the DTO
+     * instead of building per-row lists and EasyExcel/POI row models.
+     */
+    public static <R> String writeDirectXlsx(String filePathPrefix,
+                                             ExportColumns<R> columns,
+                                             ExportBatchIterator<R> batches) {
+        return writeBatchDataInternal(
+                filePathPrefix,
+                batches,
+                ExportFormatEnum.XLSX,
+                filePath -> new DirectXlsxFileWriter<>(filePath, columns),
+                "Direct Mode"
+        );
+    }
+
+    private static <R> String writeBatchDataInternal(String filePathPrefix,
+                                                     ExportBatchIterator<R> batches,
+                                                     ExportFormatEnum format,
+                                                     Function<String, ExportFileWriter<R>> writerFactory,
+                                                     String mode) {
+        String filePath = filePathPrefix + "-" + System.currentTimeMillis() + "." + format.getExtension();
 
-        log.info("[ExcelStreamWriter] Start writing Excel ({}), filePath={}, conditionCount={}", mode, filePath, conditionList.size());
+        log.info("[ExcelStreamWriter] Start writing {} ({}), filePath={}", format.getCode(), mode, filePath);
 
-        ExcelWriter excelWriter = null;
+        ExportFileWriter<R> fileWriter = null;
+        boolean closed = false;
         try {
-            excelWriter = writerFactory.apply(filePath);
-
-            int currentSheetIndex = 0;
-            int currentSheetRows = 0;
-            WriteSheet currentSheet = sheetFactory.apply(currentSheetIndex);
+            fileWriter = writerFactory.apply(filePath);
 
             int batchIndex = 0;
-            for (C condition : conditionList) {
+            long totalRows = 0;
+            while (batches.hasNext()) {
                 batchIndex++;
-                log.debug("[ExcelStreamWriter] Processing batch {}/{}, condition={}", batchIndex, conditionList.size(), condition);
+                log.debug("[ExcelStreamWriter] Processing batch {}", batchIndex);
 
-                List<R> batchData;
-                try {
-                    batchData = dataFetcher.apply(condition);
-                } catch (Exception e) {
-                    log.error("[ExcelStreamWriter] Failed to fetch data for condition: {}", condition, e);
-                    throw new BusinessException("Failed to query export data: " + e.getMessage(), e);
-                }
+                List<R> batchData = batches.next();
 
                 if (batchData == null || batchData.isEmpty()) {
                     log.debug("[ExcelStreamWriter] Batch {} has no data, skip", batchIndex);
@@ -99,45 +119,40 @@ public class ExcelStreamWriter {
                 int batchSize = batchData.size();
                 log.debug("[ExcelStreamWriter] Batch {} fetched {} rows", batchIndex, batchSize);
 
-                if (currentSheetRows + batchSize > MAX_ROWS_PER_SHEET) {
-                    log.info("[ExcelStreamWriter] Current sheet rows={}, exceeds limit, switching to next sheet", currentSheetRows);
-                    currentSheetIndex++;
-                    currentSheetRows = 0;
-                    currentSheet = sheetFactory.apply(currentSheetIndex);
-                }
-
-                List<List<Object>> writeData = dataConverter.apply(batchData, rowMapper);
                 try {
-                    excelWriter.write(writeData, currentSheet);
-                    currentSheetRows += batchSize;
-                    log.debug("[ExcelStreamWriter] Batch {} written successfully, currentSheetRows={}", batchIndex, currentSheetRows);
+                    fileWriter.write(batchData);
+                    totalRows += batchSize;
+                    log.debug("[ExcelStreamWriter] Batch {} written successfully, totalRows={}", batchIndex, totalRows);
                 } catch (Exception e) {
                     log.error("[ExcelStreamWriter] Failed to write batch {}", batchIndex, e);
-                    throw new BusinessException("Failed to write Excel: " + e.getMessage(), e);
+                    throw new BusinessException("Failed to write " + format.getCode() + ": " + e.getMessage(), e);
                 }
 
                 batchData.clear();
-                writeData.clear();
             }
 
-            log.info("[ExcelStreamWriter] Excel writing completed ({}), filePath={}, totalSheets={}, lastSheetRows={}",
-                    mode, filePath, currentSheetIndex + 1, currentSheetRows);
+            fileWriter.close();
+            closed = true;
+
+            log.info("[ExcelStreamWriter] {} writing completed ({}), filePath={}, batches={}, totalRows={}",
+                    format.getCode(), mode, filePath, batchIndex, totalRows);
 
             return filePath;
 
         } catch (BusinessException e) {
             throw e;
         } catch (Exception e) {
-            log.error("[ExcelStreamWriter] Unexpected error during Excel writing ({})", mode, e);
-            throw new BusinessException("Excel writing failed: " + e.getMessage(), e);
+            log.error("[ExcelStreamWriter] Unexpected error during {} writing ({})", format.getCode(), mode, e);
+            throw new BusinessException(format.getCode() + " writing failed: " + e.getMessage(), e);
         } finally {
-            if (excelWriter != null) {
+            if (fileWriter != null && !closed) {
                 try {
-                    excelWriter.finish();
-                    log.debug("[ExcelStreamWriter] ExcelWriter closed successfully");
+                    fileWriter.close();
                 } catch (Exception e) {
-                    log.error("[ExcelStreamWriter] Failed to close ExcelWriter", e);
+                    log.error("[ExcelStreamWriter] Failed to close {} writer", format.getCode(), e);
                 }
+                // A failed export is retried into a new file, so the partial one is never served.
+                ExportFileUtils.deleteQuietly(filePath);
             }
         }
     }
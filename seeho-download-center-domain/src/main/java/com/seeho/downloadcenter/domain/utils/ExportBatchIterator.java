@@ -0,0 +1,14 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Source of export batches consumed by {@link ExcelStreamWriter}, in the order they must be written.
+ * Closing it releases any batch that was fetched ahead but not yet consumed.
+ */
+public interface ExportBatchIterator<R> extends Iterator<List<R>>, AutoCloseable {
+
+    @Override
+    void close();
+}
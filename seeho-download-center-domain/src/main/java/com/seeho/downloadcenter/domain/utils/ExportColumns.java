@@ -0,0 +1,18 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import java.util.List;
+
+/**
+ * Column-wise view of an export layout, letting writers read cells one at a time
+ * instead of materializing a {@code List<Object>} per row.
+ */
+public interface ExportColumns<R> {
+
+    /** One header text per column. */
+    List<String> getHeader();
+
+    int size();
+
+    /** Value of {@code column} for {@code row}, already formatted for output; may be {@code null}. */
+    Object cell(R row, int column);
+}
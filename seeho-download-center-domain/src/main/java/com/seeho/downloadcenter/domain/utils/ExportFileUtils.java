@@ -0,0 +1,82 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * File-level helpers for exports written in parts: bundling parts into a zip or stitching them into one file.
+ */
+@Slf4j
+public class ExportFileUtils {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Streams {@code filePaths} into {@code zipPath}, one entry per file named after the file.
+     * Already compressed parts (xlsx, gzip) should pass {@code compress = false}: deflating them again
+     * costs CPU and gains nothing.
+     */
+    public static String zip(String zipPath, List<String> filePaths, boolean compress) {
+        try (ZipOutputStream zip = new ZipOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(Paths.get(zipPath)), BUFFER_BYTES))) {
+            zip.setLevel(compress ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION);
+            for (String filePath : filePaths) {
+                Path path = Paths.get(filePath);
+                zip.putNextEntry(new ZipEntry(path.getFileName().toString()));
+                Files.copy(path, zip);
+                zip.closeEntry();
+            }
+        } catch (IOException e) {
+            log.error("[ExportFileUtils] Failed to write zip, zipPath={}", zipPath, e);
+            deleteQuietly(zipPath);
+            throw new BusinessException("Failed to bundle export parts: " + e.getMessage(), e);
+        }
+        log.info("[ExportFileUtils] Bundled {} parts into {}", filePaths.size(), zipPath);
+        return zipPath;
+    }
+
+    /**
+     * Appends {@code filePaths} byte for byte into {@code targetPath}. Suitable for delimited parts where
+     * only the first part carries the header; gzip parts stitch into a valid multi-member gzip file.
+     */
+    public static String concat(String targetPath, List<String> filePaths) {
+        try (FileChannel target = FileChannel.open(Paths.get(targetPath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (String filePath : filePaths) {
+                try (FileChannel source = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+                    long size = source.size();
+                    long copied = 0;
+                    while (copied < size) {
+                        copied += source.transferTo(copied, size - copied, target);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("[ExportFileUtils] Failed to stitch parts, targetPath={}", targetPath, e);
+            deleteQuietly(targetPath);
+            throw new BusinessException("Failed to stitch export parts: " + e.getMessage(), e);
+        }
+        log.info("[ExportFileUtils] Stitched {} parts into {}", filePaths.size(), targetPath);
+        return targetPath;
+    }
+
+    public static void deleteQuietly(String filePath) {
+        try {
+            Files.deleteIfExists(Paths.get(filePath));
+        } catch (IOException e) {
+            log.warn("[ExportFileUtils] Failed to delete file: {}", filePath, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import java.util.List;
+
+/**
+ * Sink for the batches of one export file; implementations own the on-disk format.
+ * Batches are written in the order they are handed in, and {@link #close()} completes the file.
+ */
+public interface ExportFileWriter<R> extends AutoCloseable {
+
+    /** Appends a batch of rows to the file. */
+    void write(List<R> rows);
+
+    /** Flushes and completes the file; a failure here means the file is unusable. */
+    @Override
+    void close();
+}
@@ -0,0 +1,152 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Property readers of an export DTO, addressed by integer slot.
+ * Readers are generated once per class from its bean getters with {@link LambdaMetafactory}, so a read is
+ * an ordinary interface call the JIT can inline rather than a reflective invocation.
+ * Callers resolve field names to slots up front and index by slot on the hot path.
+ */
+@Slf4j
+public final class FieldAccessors<R> {
+
+    private static final Map<Class<?>, FieldAccessors<?>> CACHE = new ConcurrentHashMap<>();
+
+    private final String[] names;
+    private final List<Function<R, Object>> readers;
+    private final Map<String, Integer> slots;
+
+    private FieldAccessors(String[] names, List<Function<R, Object>> readers) {
+        this.names = names;
+        this.readers = Collections.unmodifiableList(new ArrayList<>(readers));
+        Map<String, Integer> slotMap = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            slotMap.put(names[i], i);
+        }
+        this.slots = slotMap;
+    }
+
+    /** Returns the generated readers of {@code type}, building them on first use. */
+    @SuppressWarnings("unchecked")
+    public static <R> FieldAccessors<R> forClass(Class<R> type) {
+        return (FieldAccessors<R>) CACHE.computeIfAbsent(type, FieldAccessors::build);
+    }
+
+    /**
+     * Returns a copy in which hand-written readers replace the generated ones of the same name;
+     * names the class has no getter for are added as new slots.
+     */
+    public FieldAccessors<R> withOverrides(Map<String, Function<R, Object>> overrides) {
+        if (overrides == null || overrides.isEmpty()) {
+            return this;
+        }
+        List<String> mergedNames = new ArrayList<>(Arrays.asList(names));
+        List<Function<R, Object>> mergedReaders = new ArrayList<>(readers);
+        overrides.forEach((name, reader) -> {
+            Integer slot = slots.get(name);
+            if (slot != null) {
+                mergedReaders.set(slot, reader);
+            } else {
+                mergedNames.add(name);
+                mergedReaders.add(reader);
+            }
+        });
+        return new FieldAccessors<>(mergedNames.toArray(new String[0]), mergedReaders);
+    }
+
+    /** Slot of a field, or {@code -1} when the DTO has no such field. */
+    public int slotOf(String field) {
+        Integer slot = slots.get(field);
+        return slot == null ? -1 : slot;
+    }
+
+    public Function<R, Object> reader(int slot) {
+        return readers.get(slot);
+    }
+
+    public int size() {
+        return readers.size();
+    }
+
+    private static <R> FieldAccessors<R> build(Class<R> type) {
+        BeanInfo beanInfo;
+        try {
+            beanInfo = Introspector.getBeanInfo(type, Object.class);
+        } catch (IntrospectionException e) {
+            throw new BusinessException("Failed to introspect export class: " + type.getName(), e);
+        }
+
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new BusinessException("Export class is not accessible: " + type.getName(), e);
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Function<R, Object>> readers = new ArrayList<>();
+        for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
+            Method getter = property.getReadMethod();
+            if (getter == null) {
+                continue;
+            }
+            names.add(property.getName());
+            readers.add(generateReader(lookup, type, getter));
+        }
+        log.info("[FieldAccessors] Generated {} field readers for {}", names.size(), type.getSimpleName());
+        return new FieldAccessors<>(names.toArray(new String[0]), readers);
+    }
+
+    private static <R> Function<R, Object> generateReader(MethodHandles.Lookup lookup, Class<R> type, Method getter) {
+        MethodHandle handle;
+        try {
+            handle = lookup.unreflect(getter);
+        } catch (IllegalAccessException e) {
+            throw new BusinessException("Getter is not accessible: " + getter, e);
+        }
+        try {
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(getter.getReturnType(), type).wrap());
+            @SuppressWarnings("unchecked")
+            Function<R, Object> reader = (Function<R, Object>) site.getTarget().invokeExact();
+            return reader;
+        } catch (Throwable e) {
+            // Still correct, just not inlinable; happens for getters the lambda factory cannot link.
+            log.warn("[FieldAccessors] Falling back to method handle for {}: {}", getter, e.getMessage());
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+            return row -> {
+                try {
+                    return generic.invokeExact((Object) row);
+                } catch (Throwable t) {
+                    throw new BusinessException("Failed to read field via " + getter.getName(), t);
+                }
+            };
+        }
+    }
+}
@@ -10,7 +10,8 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class JsonUtil {
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    /** Registers the Jackson modules found on the classpath, so java.time fields (de)serialize. */
+    private static final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
 
     public static String toJson(Object obj) {
         try {
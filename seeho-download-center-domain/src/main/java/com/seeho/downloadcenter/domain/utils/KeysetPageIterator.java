@@ -0,0 +1,124 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Walks an export with keyset (seek) pagination: each page is requested strictly after the key of the
+ * last row of the previous page, until an empty page comes back.
+ * No count queries or OFFSET scans are issued. With an executor, the next page is fetched in the
+ * background while the caller writes the current one.
+ */
+@Slf4j
+public class KeysetPageIterator<C, R> implements ExportBatchIterator<R> {
+
+    private final C condition;
+    private final BiFunction<C, Long, List<R>> pageFetcher;
+    private final Function<R, Long> keyExtractor;
+    private final Executor fetchExecutor;
+
+    private CompletableFuture<List<R>> pending;
+    private List<R> nextPage;
+    private Long lastKey;
+    private int pageIndex = 0;
+    private boolean exhausted = false;
+
+    public KeysetPageIterator(C condition,
+                              BiFunction<C, Long, List<R>> pageFetcher,
+                              Function<R, Long> keyExtractor,
+                              Executor fetchExecutor) {
+        this.condition = condition;
+        this.pageFetcher = pageFetcher;
+        this.keyExtractor = keyExtractor;
+        this.fetchExecutor = fetchExecutor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPage != null) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        List<R> page = pending != null ? await(pending) : fetch(lastKey, pageIndex + 1);
+        pending = null;
+        if (page == null || page.isEmpty()) {
+            log.debug("[KeysetPage] Empty page after key={}, pagination finished", lastKey);
+            exhausted = true;
+            return false;
+        }
+        pageIndex++;
+        advanceKey(page);
+        nextPage = page;
+        if (fetchExecutor != null) {
+            Long seekKey = lastKey;
+            int index = pageIndex + 1;
+            pending = CompletableFuture.supplyAsync(() -> fetch(seekKey, index), fetchExecutor);
+        }
+        return true;
+    }
+
+    @Override
+    public List<R> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<R> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+
+    private void advanceKey(List<R> page) {
+        Long key = keyExtractor.apply(page.get(page.size() - 1));
+        if (key == null || (lastKey != null && key <= lastKey)) {
+            throw new BusinessException(String.format(
+                    "[KeysetPage] Page key did not advance, lastKey=%s, pageLastKey=%s. Pages must be ordered by an increasing key",
+                    lastKey, key));
+        }
+        lastKey = key;
+    }
+
+    private List<R> fetch(Long afterKey, int index) {
+        log.debug("[KeysetPage] Fetching page {}, afterKey={}", index, afterKey);
+        try {
+            return pageFetcher.apply(condition, afterKey);
+        } catch (Exception e) {
+            log.error("[KeysetPage] Failed to fetch page after key={}, condition={}", afterKey, condition, e);
+            throw new BusinessException("Failed to query export data: " + e.getMessage(), e);
+        }
+    }
+
+    private List<R> await(CompletableFuture<List<R>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Interrupted while waiting for export data", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            }
+            throw new BusinessException("Failed to query export data: " + cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        nextPage = null;
+        exhausted = true;
+    }
+}
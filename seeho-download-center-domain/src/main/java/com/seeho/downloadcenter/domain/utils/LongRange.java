@@ -0,0 +1,16 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Inclusive bounds of a numeric key, as returned by a {@code SELECT MIN(id), MAX(id)} probe.
+ */
+@Getter
+@AllArgsConstructor
+public class LongRange {
+
+    private final long min;
+
+    private final long max;
+}
@@ -1,5 +1,7 @@
 package com.seeho.downloadcenter.domain.utils;
 
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+
 /**
  * Utility for building deterministic MQ message keys.
  */
@@ -8,4 +10,25 @@ public class MessageKeyUtils {
     public static String generate(String dlCode, Long taskId) {
         return String.format("%s-%d", dlCode, taskId);
     }
+
+    /** The stored key, or the one derived from type and id for tasks created in bulk without it. */
+    public static String of(DownloadLogPO task) {
+        if (task.getMessageKey() != null || task.getId() == null) {
+            return task.getMessageKey();
+        }
+        return generate(task.getDownloadType(), task.getId());
+    }
+
+    /** Task id encoded in {@code messageKey}; {@code null} when it is not a generated key. */
+    public static Long parseTaskId(String messageKey) {
+        int separator = messageKey == null ? -1 : messageKey.lastIndexOf('-');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return Long.parseLong(messageKey.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
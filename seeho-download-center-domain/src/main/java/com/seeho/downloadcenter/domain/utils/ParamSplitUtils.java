@@ -6,41 +6,66 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
- * Utility that splits time-ranged queries into manageable segments.
+ * Utility that splits range queries into manageable segments.
+ * A range is a closed interval over one dimension of the condition: a date-time (split to the second),
+ * a date (split to the day) or a numeric key such as an auto-increment id (split to a single value).
+ * When a row histogram is available the plan is packed from one bucketed aggregate query; otherwise the
+ * range is bisected with a COUNT query per node. Segments too dense to narrow further are handed to a
+ * hot-spot strategy instead of failing the export.
  */
 @Slf4j
 public class ParamSplitUtils<E extends PageRequest> {
 
-    public final int MIN_PART_SIZE = 1;
     public final int MAX_PART_SIZE = 43200;
 
-    private Function<E, LocalDateTime> getStart;
-    private Function<E, LocalDateTime> getEnd;
-    private BiConsumer<E, LocalDateTime> setStart;
-    private BiConsumer<E, LocalDateTime> setEnd;
+    /** Ranges up to this many hours are bucketed per hour, longer ones per day. */
+    private static final long MAX_HOURLY_BUCKETS = 93 * 24;
+
+    private final Dimension<E> dimension;
     private Function<E, Long> count;
+    private BiFunction<E, ChronoUnit, Map<LocalDateTime, Long>> histogram;
+    private Function<E, LongRange> boundsProbe;
+    private ParamSplitUtils<E> hotSpotSplit;
+    /** Serializes use of the secondary planner; a lock rather than a monitor so its count queries never pin a virtual thread. */
+    private final ReentrantLock hotSpotLock = new ReentrantLock();
     private int paramRows = 5000;
     private int maxQueryRows = paramRows * 3;
 
     private int pageIndex = 1;
 
+    private boolean streamingReads;
+
+    private ForkJoinPool splitPool;
 
-    private ParamSplitUtils(Function<E, LocalDateTime> getStart,
-                            Function<E, LocalDateTime> getEnd,
-                            BiConsumer<E, LocalDateTime> setStart,
-                            BiConsumer<E, LocalDateTime> setEnd,
-                            Function<E, Long> count) {
-        this.getStart = getStart;
-        this.getEnd = getEnd;
-        this.setStart = setStart;
-        this.setEnd = setEnd;
+    private final AtomicInteger countQueries = new AtomicInteger();
+    private int histogramQueries;
+
+    private ParamSplitUtils(Dimension<E> dimension, Function<E, Long> count) {
+        this.dimension = dimension;
         this.count = count;
     }
 
@@ -50,7 +75,16 @@ public class ParamSplitUtils<E extends PageRequest> {
             BiConsumer<E, LocalDateTime> setStart,
             BiConsumer<E, LocalDateTime> setEnd,
             Function<E, Long> count) {
-        return new ParamSplitUtils<>(getStart, getEnd, setStart, setEnd, count);
+        Function<LocalDateTime, Long> toCoordinate = dateTime -> dateTime == null ? null : dateTime.toEpochSecond(ZoneOffset.UTC);
+        Function<Long, LocalDateTime> fromCoordinate = second -> LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+        return new ParamSplitUtils<>(new Dimension<>(
+                getStart.andThen(toCoordinate),
+                getEnd.andThen(toCoordinate),
+                (e, second) -> setStart.accept(e, fromCoordinate.apply(second)),
+                (e, second) -> setEnd.accept(e, fromCoordinate.apply(second)),
+                toCoordinate,
+                ChronoUnit.MINUTES,
+                fromCoordinate::apply), count);
     }
 
     public static <E extends PageRequest> ParamSplitUtils<E> forLocalDate(
@@ -59,90 +93,532 @@ public class ParamSplitUtils<E extends PageRequest> {
             BiConsumer<E, LocalDate> setStartDate,
             BiConsumer<E, LocalDate> setEndDate,
             Function<E, Long> count) {
+        Function<LocalDate, Long> toCoordinate = date -> date == null ? null : date.toEpochDay();
+        return new ParamSplitUtils<>(new Dimension<>(
+                getStartDate.andThen(toCoordinate),
+                getEndDate.andThen(toCoordinate),
+                (e, day) -> setStartDate.accept(e, LocalDate.ofEpochDay(day)),
+                (e, day) -> setEndDate.accept(e, LocalDate.ofEpochDay(day)),
+                dateTime -> dateTime.toLocalDate().toEpochDay(),
+                ChronoUnit.DAYS,
+                LocalDate::ofEpochDay), count);
+    }
 
-        Function<E, LocalDateTime> getStart = e -> {
-            LocalDate date = getStartDate.apply(e);
-            return date == null ? null : date.atStartOfDay();
-        };
+    /**
+     * Splits over a numeric key range, typically the auto-increment primary key, so every segment is an
+     * index range scan. Both bounds are inclusive; a missing bound is filled in by the probe
+     * ({@link #withBoundsProbe}). The initial split uses equal-width ranges sized from the total count,
+     * which for a dense key needs about one COUNT per segment; ranges that are still too large are bisected.
+     */
+    public static <E extends PageRequest> ParamSplitUtils<E> forLongRange(
+            Function<E, Long> getLow,
+            Function<E, Long> getHigh,
+            BiConsumer<E, Long> setLow,
+            BiConsumer<E, Long> setHigh,
+            Function<E, Long> count) {
+        return new ParamSplitUtils<>(new Dimension<>(getLow, getHigh, setLow, setHigh, null, null, key -> key), count);
+    }
 
-        Function<E, LocalDateTime> getEnd = e -> {
-            LocalDate date = getEndDate.apply(e);
-            return date == null ? null : date.atTime(23, 59, 59);
-        };
+    /**
+     * Plans from row counts grouped by bucket start instead of bisecting with COUNT queries.
+     * The function receives the condition and the bucket unit ({@code DAYS}, {@code HOURS} or {@code MINUTES})
+     * and returns non-empty buckets keyed by their start, or {@code null} when no histogram is available.
+     * Only used by time dimensions.
+     */
+    public ParamSplitUtils<E> withHistogram(BiFunction<E, ChronoUnit, Map<LocalDateTime, Long>> histogram) {
+        this.histogram = histogram;
+        return this;
+    }
 
-        BiConsumer<E, LocalDateTime> setStart = (e, dateTime) -> {
-            if (dateTime != null) {
-                setStartDate.accept(e, dateTime.toLocalDate());
-            } else {
-                setStartDate.accept(e, null);
-            }
-        };
+    /**
+     * Looks up the actual key range (for example {@code SELECT MIN(id), MAX(id)}) when the condition leaves
+     * a bound open. A {@code null} result means the condition matches no rows.
+     */
+    public ParamSplitUtils<E> withBoundsProbe(Function<E, LongRange> boundsProbe) {
+        this.boundsProbe = boundsProbe;
+        return this;
+    }
 
-        BiConsumer<E, LocalDateTime> setEnd = (e, dateTime) -> {
-            if (dateTime != null) {
-                setEndDate.accept(e, dateTime.toLocalDate());
-            } else {
-                setEndDate.accept(e, null);
-            }
-        };
+    /**
+     * Splitter for segments that cannot be narrowed on this dimension yet exceed {@code maxQueryRows},
+     * usually {@link #forLongRange} on the primary key with a bounds probe, so the hot second becomes
+     * id-range segments. Without one, such a segment is read in pages of {@code paramRows}, which needs
+     * {@link com.seeho.downloadcenter.domain.dotask.process.QueryExportDataService#queryExportData} to honor
+     * {@code pageIndex} with a stable order (for example {@code ORDER BY create_time, id}).
+     */
+    public ParamSplitUtils<E> withHotSpotSplit(ParamSplitUtils<E> hotSpotSplit) {
+        this.hotSpotSplit = hotSpotSplit;
+        return this;
+    }
+
+    /**
+     * Declares that segments are read with a cursor that ignores {@code pageSize}/{@code pageIndex}
+     * (see {@link com.seeho.downloadcenter.domain.dotask.process.QueryExportDataService#supportsStreaming}).
+     * A hot spot without a secondary splitter is then planned as one segment instead of pages, each of
+     * which would stream the whole condition again.
+     */
+    public ParamSplitUtils<E> withStreamingReads(boolean streamingReads) {
+        this.streamingReads = streamingReads;
+        return this;
+    }
 
-        return new ParamSplitUtils<>(getStart, getEnd, setStart, setEnd, count);
+    /**
+     * Bisects on {@code pool}, evaluating sibling ranges concurrently; the pool's parallelism bounds the
+     * number of COUNT queries in flight. {@code null} keeps planning sequential on the caller thread.
+     */
+    public ParamSplitUtils<E> withForkJoin(ForkJoinPool pool) {
+        this.splitPool = pool;
+        return this;
     }
 
     public List<E> split(E e) {
         List<E> result = new LinkedList<>();
-        doSplit(e, result);
+        for (SplitSegment<E> segment : planSegments(e)) {
+            result.add(segment.getCondition());
+        }
+        return result;
+    }
+
+    /**
+     * Splits like {@link #split} but keeps the row count of every segment, which callers use to
+     * size work (for example multi-part exports) without issuing further count queries.
+     */
+    public List<SplitSegment<E>> planSegments(E e) {
+        List<SplitSegment<E>> result = new LinkedList<>();
+        countQueries.set(0);
+        histogramQueries = 0;
+        String planner;
+        if (dimension.isTime() && histogram != null && packFromHistogram(e, result)) {
+            planner = "histogram";
+        } else {
+            result.clear();
+            List<E> seeds = seedRanges(e);
+            if (splitPool != null && seeds.size() > 1) {
+                result.addAll(splitPool.invoke(ForkJoinTask.adapt(() -> {
+                    List<SplitTask> tasks = new ArrayList<>(seeds.size());
+                    for (E seed : seeds) {
+                        tasks.add(new SplitTask(seed));
+                    }
+                    List<SplitSegment<E>> merged = new ArrayList<>();
+                    for (SplitTask task : ForkJoinTask.invokeAll(tasks)) {
+                        merged.addAll(task.join());
+                    }
+                    return merged;
+                })));
+            } else {
+                for (E seed : seeds) {
+                    doSplit(seed, result);
+                }
+            }
+            planner = dimension.isTime() ? "bisection" : "equal-width";
+        }
+        log.info("[ParamSplit] Plan built, planner={}, segments={}, histogramQueries={}, countQueries={}",
+                planner, result.size(), histogramQueries, countQueries);
         return result;
     }
 
-    private void doSplit(E segment, List<E> result) {
-        LocalDateTime start = getStart.apply(segment);
-        LocalDateTime end = getEnd.apply(segment);
+    /**
+     * Same plan as {@link #planSegments}, produced lazily: bisection runs depth-first on the consuming
+     * thread and each segment is returned as soon as it qualifies, so a writer can fetch and write the first
+     * segments while later ranges are still being counted, and only the open branches of the range stay in
+     * memory. A histogram plan is built up front, since it is one query. Always sequential; the fork-join
+     * pool is not used.
+     */
+    public Iterator<SplitSegment<E>> iterate(E e) {
+        countQueries.set(0);
+        histogramQueries = 0;
+        if (dimension.isTime() && histogram != null) {
+            List<SplitSegment<E>> packed = new LinkedList<>();
+            if (packFromHistogram(e, packed)) {
+                log.info("[ParamSplit] Plan built, planner=histogram, segments={}, histogramQueries={}, countQueries={}",
+                        packed.size(), histogramQueries, countQueries);
+                return packed.iterator();
+            }
+        }
+        return new LazyPlan(seedRanges(e));
+    }
+
+    /**
+     * Top-level ranges to bisect: the condition itself for time dimensions, equal-width ranges for
+     * numeric keys. Empty when the key range holds no rows; a key range within {@code paramRows} is kept
+     * whole, open bounds included.
+     */
+    private List<E> seedRanges(E e) {
+        if (dimension.isTime()) {
+            return Collections.singletonList(e);
+        }
+        E bounded = e;
+        if (!hasBounds(e) && boundsProbe != null) {
+            LongRange range = boundsProbe.apply(e);
+            if (range == null) {
+                log.info("[ParamSplit] Bounds probe found no rows, empty plan");
+                return Collections.emptyList();
+            }
+            bounded = BeanUtil.copy(e, (Class<E>) e.getClass());
+            if (dimension.getLow.apply(bounded) == null) {
+                dimension.setLow.accept(bounded, range.getMin());
+            }
+            if (dimension.getHigh.apply(bounded) == null) {
+                dimension.setHigh.accept(bounded, range.getMax());
+            }
+        }
+        Long total = count.apply(bounded);
+        countQueries.incrementAndGet();
+        if (total == null || total == 0) {
+            return Collections.emptyList();
+        }
+        if (total <= paramRows) {
+            return Collections.singletonList(bounded);
+        }
+        Assert.isTrue(hasBounds(bounded), "[ParamSplit] Key range needs both bounds or a bounds probe");
+        long low = dimension.getLow.apply(bounded);
+        long high = dimension.getHigh.apply(bounded);
+        if (low >= high) {
+            return Collections.singletonList(bounded);
+        }
+
+        // ceil(total / paramRows) equal-width ranges; only those still above paramRows get bisected.
+        long ranges = Math.min((total + paramRows - 1) / paramRows, high - low + 1);
+        long width = (high - low + ranges) / ranges;
+        List<E> seeds = new ArrayList<>((int) ranges);
+        for (long rangeLow = low; rangeLow <= high; rangeLow += width) {
+            seeds.add(narrow(bounded, rangeLow, Math.min(rangeLow + width - 1, high)));
+            if (rangeLow > high - width) {
+                break;
+            }
+        }
+        log.debug("[ParamSplit] Equal-width seeds. low={}, high={}, total={}, ranges={}", low, high, total, seeds.size());
+        return seeds;
+    }
+
+    /** Histogram plan of the whole condition; {@code false} when a bound is open, as buckets need both. */
+    private boolean packFromHistogram(E e, List<SplitSegment<E>> result) {
+        if (!hasBounds(e)) {
+            return false;
+        }
+        return packFromHistogram(e, histogramUnit(e), result);
+    }
+
+    /**
+     * Packs adjacent histogram buckets into contiguous segments of at most {@code paramRows}.
+     * A bucket that alone exceeds {@code paramRows} is planned again from a finer histogram (hours, then
+     * minutes), and bisected with COUNT queries only below that. Returns {@code false} when the histogram
+     * is unavailable.
+     */
+    private boolean packFromHistogram(E e, ChronoUnit unit, List<SplitSegment<E>> result) {
+        long start = dimension.getLow.apply(e);
+        long end = dimension.getHigh.apply(e);
+        Map<LocalDateTime, Long> buckets;
+        try {
+            buckets = histogram.apply(e, unit);
+            histogramQueries++;
+        } catch (Exception ex) {
+            log.warn("[ParamSplit] Histogram query failed, falling back to bisection. start={}, end={}",
+                    dimension.describe(start), dimension.describe(end), ex);
+            return false;
+        }
+        if (buckets == null) {
+            return false;
+        }
+        TreeMap<LocalDateTime, Long> sorted = new TreeMap<>();
+        buckets.forEach((bucketStart, rows) -> {
+            if (bucketStart != null && rows != null && rows > 0) {
+                sorted.merge(bucketStart.truncatedTo(unit), rows, Long::sum);
+            }
+        });
+
+        long segmentStart = start;
+        long segmentRows = 0;
+        for (Map.Entry<LocalDateTime, Long> bucket : sorted.entrySet()) {
+            long bucketStart = Math.max(dimension.fromTime.apply(bucket.getKey()), start);
+            if (bucketStart > end) {
+                break;
+            }
+            long bucketEnd = Math.min(dimension.fromTime.apply(bucket.getKey().plus(1, unit)) - 1, end);
+            long rows = bucket.getValue();
+            if (segmentRows > 0 && segmentRows + rows > paramRows) {
+                result.add(newSegment(e, segmentStart, bucketStart - 1, segmentRows));
+                segmentStart = bucketStart;
+                segmentRows = 0;
+            }
+            if (rows > paramRows) {
+                log.debug("[ParamSplit] Hot bucket, splitting further. start={}, end={}, count={}",
+                        dimension.describe(bucketStart), dimension.describe(bucketEnd), rows);
+                E hot = narrow(e, segmentStart, bucketEnd);
+                ChronoUnit finer = finerUnit(unit);
+                if (finer == null || !packFromHistogram(hot, finer, result)) {
+                    doSplit(hot, result);
+                }
+                segmentStart = bucketEnd + 1;
+                continue;
+            }
+            segmentRows += rows;
+        }
+        if (segmentRows > 0) {
+            result.add(newSegment(e, segmentStart, end, segmentRows));
+        }
+        return true;
+    }
+
+    /** Needs both bounds. */
+    private ChronoUnit histogramUnit(E e) {
+        if (dimension.finestBucket == ChronoUnit.DAYS) {
+            return ChronoUnit.DAYS;
+        }
+        long seconds = dimension.getHigh.apply(e) - dimension.getLow.apply(e);
+        return seconds / 3600 > MAX_HOURLY_BUCKETS ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+    }
+
+    /** Next bucket unit for a hot bucket, or {@code null} when only bisection is left. */
+    private ChronoUnit finerUnit(ChronoUnit unit) {
+        if (unit == dimension.finestBucket) {
+            return null;
+        }
+        return unit == ChronoUnit.DAYS ? ChronoUnit.HOURS : ChronoUnit.MINUTES;
+    }
+
+    private boolean hasBounds(E e) {
+        return dimension.getLow.apply(e) != null && dimension.getHigh.apply(e) != null;
+    }
+
+    private SplitSegment<E> newSegment(E e, long start, long end, long rows) {
+        E segment = narrow(e, start, end);
+        segment.setPageSize(paramRows);
+        segment.setPageIndex(pageIndex);
+        return new SplitSegment<>(segment, rows);
+    }
+
+    private void doSplit(E segment, List<SplitSegment<E>> result) {
+        if (splitPool != null) {
+            result.addAll(splitPool.invoke(new SplitTask(segment)));
+            return;
+        }
+        for (E half : bisect(segment, result)) {
+            doSplit(half, result);
+        }
+    }
+
+    /**
+     * Evaluates one node of the bisection: adds the segment to {@code result} when it is small enough (or
+     * skips it when empty) and returns nothing, otherwise returns its two halves, left first.
+     * A range of a single dimension unit (one second, one day, one key) cannot be halved further. Bounds
+     * may be open as long as the segment needs no halving.
+     */
+    private List<E> bisect(E segment, List<SplitSegment<E>> result) {
+        Long low = dimension.getLow.apply(segment);
+        Long high = dimension.getHigh.apply(segment);
 
         Long count = this.count.apply(segment);
+        countQueries.incrementAndGet();
 
         if (count == null || count == 0) {
-            log.debug("[ParamSplit] Segment has no data, skip. start={}, end={}", start, end);
-            return;
+            log.debug("[ParamSplit] Segment has no data, skip. start={}, end={}",
+                    dimension.describe(low), dimension.describe(high));
+            return Collections.emptyList();
         }
 
         if (count <= paramRows) {
-            log.debug("[ParamSplit] Segment within limit, add to result. start={}, end={}, count={}", start, end, count);
+            log.debug("[ParamSplit] Segment within limit, add to result. start={}, end={}, count={}",
+                    dimension.describe(low), dimension.describe(high), count);
             segment.setPageSize(paramRows);
             segment.setPageIndex(pageIndex);
-            result.add(segment);
-            return;
+            result.add(new SplitSegment<>(segment, count));
+            return Collections.emptyList();
         }
 
-        long durationSeconds = ChronoUnit.SECONDS.between(start, end);
+        Assert.isTrue(low != null && high != null, String.format(
+                "[ParamSplit] Segment with an open bound exceeds paramRows, count=%d > paramRows=%d", count, paramRows));
+        long start = low;
+        long end = high;
 
-        if (durationSeconds <= MIN_PART_SIZE) {
-            Assert.isTrue(count <= maxQueryRows,
-                String.format("[HotSpot] Segment contains too many rows, count=%d > maxQueryRows=%d, start=%s, end=%s",
-                    count, maxQueryRows, start, end));
+        if (start >= end) {
+            if (count > maxQueryRows) {
+                splitHotSpot(segment, count, result);
+                return Collections.emptyList();
+            }
             // Allow segments slightly above paramRows as long as they stay under maxQueryRows.
             log.warn("[ParamSplit] Minimal segment exceeds paramRows but within maxQueryRows. start={}, end={}, count={}",
-                    start, end, count);
-            segment.setPageSize(paramRows);
+                    dimension.describe(start), dimension.describe(end), count);
+            // One page must cover the whole segment, or rows past paramRows are never read.
+            segment.setPageSize(count.intValue());
+            segment.setPageIndex(pageIndex);
+            result.add(new SplitSegment<>(segment, count));
+            return Collections.emptyList();
+        }
+
+        long mid = start + (end - start) / 2;
+
+        log.debug("[ParamSplit] Splitting segment. start={}, mid={}, end={}, count={}",
+                dimension.describe(start), dimension.describe(mid), dimension.describe(end), count);
+
+        return Arrays.asList(narrow(segment, start, mid), narrow(segment, mid + 1, end));
+    }
+
+    /**
+     * Copy of {@code source} covering {@code [low, high]} that rewrites only the edges that move. A time
+     * bound can be finer than its coordinate, so an outer bound such as {@code 23:59:59.999999999} must
+     * stay as given rather than be truncated to the second; only the cut edges land on whole units.
+     */
+    private E narrow(E source, long low, long high) {
+        E copy = BeanUtil.copy(source, (Class<E>) source.getClass());
+        if (!Objects.equals(dimension.getLow.apply(source), low)) {
+            dimension.setLow.accept(copy, low);
+        }
+        if (!Objects.equals(dimension.getHigh.apply(source), high)) {
+            dimension.setHigh.accept(copy, high);
+        }
+        return copy;
+    }
+
+    /**
+     * Handles a single-unit segment that still holds more than {@code maxQueryRows} rows, such as a batch
+     * import landing in one second. It is planned again on the secondary dimension when one is configured,
+     * otherwise read as consecutive pages of the same condition ({@code pageIndex} 1..n), or as one
+     * segment when reads are streamed.
+     */
+    private void splitHotSpot(E segment, long count, List<SplitSegment<E>> result) {
+        if (hotSpotSplit != null) {
+            List<SplitSegment<E>> secondary;
+            hotSpotLock.lock();
+            try {
+                secondary = hotSpotSplit.planSegments(BeanUtil.copy(segment, (Class<E>) segment.getClass()));
+            } finally {
+                hotSpotLock.unlock();
+            }
+            log.warn("[HotSpot] Segment split on secondary dimension, count={}, start={}, segments={}",
+                    count, dimension.describe(dimension.getLow.apply(segment)), secondary.size());
+            result.addAll(secondary);
+            return;
+        }
+        if (streamingReads) {
+            log.warn("[HotSpot] Segment streamed whole, count={}, maxQueryRows={}, start={}",
+                    count, maxQueryRows, dimension.describe(dimension.getLow.apply(segment)));
+            segment.setPageSize((int) Math.min(count, Integer.MAX_VALUE));
             segment.setPageIndex(pageIndex);
-            result.add(segment);
+            result.add(new SplitSegment<>(segment, count));
             return;
         }
+        long pages = (count + paramRows - 1) / paramRows;
+        log.warn("[HotSpot] Segment read in pages, count={}, maxQueryRows={}, start={}, pages={}",
+                count, maxQueryRows, dimension.describe(dimension.getLow.apply(segment)), pages);
+        for (int page = 1; page <= pages; page++) {
+            E paged = BeanUtil.copy(segment, (Class<E>) segment.getClass());
+            paged.setPageSize(paramRows);
+            paged.setPageIndex(page);
+            result.add(new SplitSegment<>(paged, Math.min(paramRows, count - (long) (page - 1) * paramRows)));
+        }
+    }
+
+    /**
+     * Bisection node run on the fork-join pool: the left half is forked while this thread evaluates the
+     * right one, so sibling COUNT queries run concurrently. Results are concatenated left then right,
+     * which keeps the plan in the same order as sequential planning.
+     */
+    private final class SplitTask extends RecursiveTask<List<SplitSegment<E>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final E segment;
+
+        private SplitTask(E segment) {
+            this.segment = segment;
+        }
 
-        long halfDuration = durationSeconds / 2;
-        LocalDateTime mid = start.plusSeconds(halfDuration);
+        @Override
+        protected List<SplitSegment<E>> compute() {
+            List<SplitSegment<E>> result = new ArrayList<>();
+            List<E> halves = bisect(segment, result);
+            if (halves.isEmpty()) {
+                return result;
+            }
+            SplitTask left = new SplitTask(halves.get(0));
+            left.fork();
+            List<SplitSegment<E>> right = new SplitTask(halves.get(1)).compute();
+            result.addAll(left.join());
+            result.addAll(right);
+            return result;
+        }
+    }
 
-        log.debug("[ParamSplit] Splitting segment. start={}, mid={}, end={}, count={}", start, mid, end, count);
+    /** Depth-first bisection driven by the consumer: an explicit stack of open ranges, left on top. */
+    private final class LazyPlan implements Iterator<SplitSegment<E>> {
+
+        private final Deque<E> pending = new ArrayDeque<>();
+        private final Deque<SplitSegment<E>> ready = new ArrayDeque<>();
+        private int produced;
+        private boolean finished;
+
+        private LazyPlan(List<E> seeds) {
+            for (int i = seeds.size() - 1; i >= 0; i--) {
+                pending.push(seeds.get(i));
+            }
+        }
 
-        E leftSegment = BeanUtil.copy(segment, (Class<E>) segment.getClass());
-        setStart.accept(leftSegment, start);
-        setEnd.accept(leftSegment, mid);
-        doSplit(leftSegment, result);
+        @Override
+        public boolean hasNext() {
+            while (ready.isEmpty() && !pending.isEmpty()) {
+                List<SplitSegment<E>> qualified = new ArrayList<>(1);
+                List<E> halves = bisect(pending.pop(), qualified);
+                ready.addAll(qualified);
+                for (int i = halves.size() - 1; i >= 0; i--) {
+                    pending.push(halves.get(i));
+                }
+            }
+            if (ready.isEmpty() && !finished) {
+                finished = true;
+                log.info("[ParamSplit] Plan built, planner=lazy, segments={}, countQueries={}", produced, countQueries);
+            }
+            return !ready.isEmpty();
+        }
 
-        E rightSegment = BeanUtil.copy(segment, (Class<E>) segment.getClass());
-        setStart.accept(rightSegment, mid.plusSeconds(1));
-        setEnd.accept(rightSegment, end);
-        doSplit(rightSegment, result);
+        @Override
+        public SplitSegment<E> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            produced++;
+            return ready.poll();
+        }
     }
 
+    /**
+     * The split dimension seen as closed ranges of long coordinates: epoch seconds for date-times, epoch
+     * days for dates, the key itself for numeric ranges. One coordinate unit is the split floor.
+     */
+    private static final class Dimension<E> {
+
+        private final Function<E, Long> getLow;
+        private final Function<E, Long> getHigh;
+        private final BiConsumer<E, Long> setLow;
+        private final BiConsumer<E, Long> setHigh;
+        /** Coordinate of a histogram bucket start; {@code null} for dimensions without a histogram. */
+        private final Function<LocalDateTime, Long> fromTime;
+        /** Finest histogram bucket that still maps to whole coordinates. */
+        private final ChronoUnit finestBucket;
+        private final Function<Long, Object> display;
+
+        private Dimension(Function<E, Long> getLow,
+                          Function<E, Long> getHigh,
+                          BiConsumer<E, Long> setLow,
+                          BiConsumer<E, Long> setHigh,
+                          Function<LocalDateTime, Long> fromTime,
+                          ChronoUnit finestBucket,
+                          Function<Long, Object> display) {
+            this.getLow = getLow;
+            this.getHigh = getHigh;
+            this.setLow = setLow;
+            this.setHigh = setHigh;
+            this.fromTime = fromTime;
+            this.finestBucket = finestBucket;
+            this.display = display;
+        }
+
+        private boolean isTime() {
+            return fromTime != null;
+        }
+
+        private Object describe(Long coordinate) {
+            return coordinate == null ? null : display.apply(coordinate);
+        }
+    }
 }
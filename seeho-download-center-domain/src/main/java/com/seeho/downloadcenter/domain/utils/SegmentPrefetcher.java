@@ -0,0 +1,115 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Iterates over the batches of a segmented export, fetching segments ahead of the consumer on the
+ * supplied executor.
+ * Batches are always returned in segment order. The window has {@code prefetchDepth} slots, and the batch
+ * last returned keeps its slot until the consumer asks for the next one, so fetched, in-flight and
+ * in-hand segments together never exceed {@code prefetchDepth}; a depth of {@code n} overlaps writing
+ * with {@code n - 1} fetches. A depth of zero (or no executor) fetches each segment inline when it is
+ * requested.
+ */
+@Slf4j
+public class SegmentPrefetcher<C, R> implements ExportBatchIterator<R> {
+
+    private final Iterator<C> conditions;
+    private final Function<C, List<R>> dataFetcher;
+    private final Executor fetchExecutor;
+    private final int prefetchDepth;
+    private final Deque<CompletableFuture<List<R>>> window = new ArrayDeque<>();
+
+    private int segmentIndex = 0;
+
+    /**
+     * Reads segments as {@code conditions} yields them, so a lazily planned export starts fetching before
+     * its plan is complete. The iterator is only advanced on the consumer thread.
+     */
+    public SegmentPrefetcher(Iterator<C> conditions,
+                             Function<C, List<R>> dataFetcher,
+                             Executor fetchExecutor,
+                             int prefetchDepth) {
+        this.conditions = conditions;
+        this.dataFetcher = dataFetcher;
+        this.fetchExecutor = fetchExecutor;
+        this.prefetchDepth = fetchExecutor == null ? 0 : Math.max(prefetchDepth, 0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (prefetchDepth == 0) {
+            return conditions.hasNext();
+        }
+        fillWindow();
+        return !window.isEmpty();
+    }
+
+    @Override
+    public List<R> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (prefetchDepth == 0) {
+            return fetch(conditions.next(), ++segmentIndex);
+        }
+        // No refill here: the returned batch holds its slot while it is written, and the next call to
+        // hasNext frees it.
+        return await(window.pollFirst());
+    }
+
+    private void fillWindow() {
+        while (window.size() < prefetchDepth && conditions.hasNext()) {
+            C condition = conditions.next();
+            int index = ++segmentIndex;
+            window.addLast(CompletableFuture.supplyAsync(() -> fetch(condition, index), fetchExecutor));
+        }
+    }
+
+    private List<R> fetch(C condition, int index) {
+        log.debug("[SegmentPrefetcher] Fetching segment {}, condition={}", index, condition);
+        try {
+            return dataFetcher.apply(condition);
+        } catch (Exception e) {
+            log.error("[SegmentPrefetcher] Failed to fetch data for condition: {}", condition, e);
+            throw new BusinessException("Failed to query export data: " + e.getMessage(), e);
+        }
+    }
+
+    private List<R> await(CompletableFuture<List<R>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new BusinessException("Interrupted while waiting for export data", e);
+        } catch (ExecutionException e) {
+            close();
+            Throwable cause = e.getCause();
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            }
+            throw new BusinessException("Failed to query export data: " + cause.getMessage(), cause);
+        }
+    }
+
+    /** Drops every segment that is still buffered or in flight. */
+    @Override
+    public void close() {
+        CompletableFuture<List<R>> pending;
+        while ((pending = window.pollFirst()) != null) {
+            pending.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One leaf of a split plan: the segment condition and the row count measured while planning it.
+ */
+@Getter
+@AllArgsConstructor
+public class SplitSegment<E> {
+
+    private final E condition;
+
+    private final long rowCount;
+}
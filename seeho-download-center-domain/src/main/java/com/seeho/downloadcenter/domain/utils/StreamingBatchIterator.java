@@ -0,0 +1,179 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Adapts a push-style row stream (for example a MyBatis {@code Cursor} drained into a sink) to the
+ * pull-style {@link ExportBatchIterator} consumed by {@link ExcelStreamWriter}.
+ * A producer task streams every segment in order on the supplied executor and hands rows over in
+ * fixed-size chunks through a small bounded queue, so heap usage stays flat however large a segment is
+ * and the writer blocks the stream (not the other way round) when it falls behind.
+ */
+@Slf4j
+public class StreamingBatchIterator<C, R> implements ExportBatchIterator<R> {
+
+    private static final Object END_OF_STREAM = new Object();
+
+    private static final long OFFER_POLL_MILLIS = 200L;
+
+    private final BlockingQueue<Object> chunks;
+    private final int chunkSize;
+
+    private volatile boolean closed = false;
+    private Object next;
+    private boolean finished = false;
+
+    public StreamingBatchIterator(List<C> conditionList,
+                                  BiConsumer<C, Consumer<R>> rowStreamer,
+                                  int chunkSize,
+                                  int bufferedChunks,
+                                  Executor producerExecutor) {
+        this(conditionList.iterator(), rowStreamer, chunkSize, bufferedChunks, producerExecutor);
+    }
+
+    /**
+     * Streams segments as {@code conditions} yields them; the iterator is advanced on the producer thread,
+     * so a lazily planned export counts its next range right after streaming the previous one.
+     */
+    public StreamingBatchIterator(Iterator<C> conditions,
+                                  BiConsumer<C, Consumer<R>> rowStreamer,
+                                  int chunkSize,
+                                  int bufferedChunks,
+                                  Executor producerExecutor) {
+        this.chunks = new ArrayBlockingQueue<>(Math.max(bufferedChunks, 1));
+        this.chunkSize = Math.max(chunkSize, 1);
+        producerExecutor.execute(() -> produce(conditions, rowStreamer));
+    }
+
+    private void produce(Iterator<C> conditions, BiConsumer<C, Consumer<R>> rowStreamer) {
+        try {
+            int segmentIndex = 0;
+            while (conditions.hasNext()) {
+                C condition = conditions.next();
+                segmentIndex++;
+                log.debug("[StreamingBatch] Streaming segment {}, condition={}", segmentIndex, condition);
+                ChunkSink sink = new ChunkSink();
+                try {
+                    rowStreamer.accept(condition, sink);
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    log.error("[StreamingBatch] Failed to stream data for condition: {}", condition, e);
+                    throw new BusinessException("Failed to query export data: " + e.getMessage(), e);
+                }
+                sink.flush();
+            }
+            handOver(END_OF_STREAM);
+        } catch (CancellationException e) {
+            log.debug("[StreamingBatch] Stream cancelled by consumer");
+        } catch (Throwable e) {
+            try {
+                handOver(e);
+            } catch (CancellationException ignored) {
+                // Consumer already gone, nothing left to report to.
+            }
+        }
+    }
+
+    /** Blocks until the queue accepts the item, aborting the stream once the consumer has closed. */
+    private void handOver(Object item) {
+        try {
+            while (!chunks.offer(item, OFFER_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    throw new CancellationException("Export stream closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while handing over export rows");
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        Object item;
+        try {
+            item = chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new BusinessException("Interrupted while waiting for export data", e);
+        }
+        if (item == END_OF_STREAM) {
+            finished = true;
+            return false;
+        }
+        if (item instanceof Throwable) {
+            finished = true;
+            close();
+            if (item instanceof BusinessException) {
+                throw (BusinessException) item;
+            }
+            Throwable cause = (Throwable) item;
+            throw new BusinessException("Failed to query export data: " + cause.getMessage(), cause);
+        }
+        next = item;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<R> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<R> chunk = (List<R>) next;
+        next = null;
+        return chunk;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        chunks.clear();
+    }
+
+    /** Collects streamed rows into chunks and hands each full chunk to the writer. */
+    private final class ChunkSink implements Consumer<R> {
+
+        private List<R> chunk = new ArrayList<>(chunkSize);
+
+        @Override
+        public void accept(R row) {
+            if (closed) {
+                throw new CancellationException("Export stream closed");
+            }
+            chunk.add(row);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            handOver(chunk);
+            chunk = new ArrayList<>(chunkSize);
+        }
+    }
+}
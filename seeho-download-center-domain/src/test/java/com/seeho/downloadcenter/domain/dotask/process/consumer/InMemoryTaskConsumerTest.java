@@ -0,0 +1,195 @@
+package com.seeho.downloadcenter.domain.dotask.process.consumer;
+
+import com.seeho.downloadcenter.base.exception.BusinessException;
+import com.seeho.downloadcenter.domain.dotask.process.FetchLatencyTracker;
+import com.seeho.downloadcenter.domain.dotask.sendtask.impl.FairTaskQueue;
+import com.seeho.downloadcenter.domain.dotask.sendtask.impl.InMemoryTaskQueueService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bulk worker autoscaling in platform mode, driven with stubbed queue depth, oldest wait and fetch latency.
+ */
+class InMemoryTaskConsumerTest {
+
+    private static final int IDLE_TICKS = 3;
+
+    private final InMemoryTaskQueueService queueService = mock(InMemoryTaskQueueService.class);
+
+    private final FairTaskQueue fastQueue = mock(FairTaskQueue.class);
+
+    private final FairTaskQueue bulkQueue = mock(FairTaskQueue.class);
+
+    private final FetchLatencyTracker fetchLatencyTracker = mock(FetchLatencyTracker.class);
+
+    private InMemoryTaskConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        when(queueService.getFastQueue()).thenReturn(fastQueue);
+        when(queueService.getBulkQueue()).thenReturn(bulkQueue);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (consumer != null) {
+            consumer.destroy();
+        }
+    }
+
+    @Test
+    void backlogWithEveryWorkerBusyGrowsTheTargetUpToMax() {
+        consumer = newConsumer(mock(ThreadPoolExecutor.class), 2);
+        stubQueues(10, 100);
+
+        List<Integer> targets = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            allWorkersBusy();
+            consumer.autoscale();
+            targets.add(targetWorkers());
+        }
+
+        assertThat(targets).containsExactly(3, 4, 6, 8);
+        assertThat(liveWorkers()).isEqualTo(8);
+    }
+
+    @Test
+    void backlogGrowsOnlyWhileEveryWorkerIsBusy() {
+        consumer = newConsumer(mock(ThreadPoolExecutor.class), 2);
+        stubQueues(10, 60_000);
+
+        // Tasks held back by a bulkhead leave workers idle; more workers would not start them sooner.
+        busyWorkers().set(1);
+        consumer.autoscale();
+        assertThat(targetWorkers()).isEqualTo(2);
+
+        // Fewer tasks than workers, but the oldest has waited past target-wait-ms.
+        stubQueues(1, 60_000);
+        allWorkersBusy();
+        consumer.autoscale();
+        assertThat(targetWorkers()).isEqualTo(3);
+    }
+
+    @Test
+    void emptyQueuesShrinkOneWorkerPerIdlePeriodDownToMin() {
+        consumer = newConsumer(mock(ThreadPoolExecutor.class), 3);
+        stubQueues(0, 0);
+
+        List<Integer> targets = new ArrayList<>();
+        for (int i = 0; i < IDLE_TICKS * 3; i++) {
+            consumer.autoscale();
+            targets.add(targetWorkers());
+        }
+
+        assertThat(targets).containsExactly(3, 3, 2, 2, 2, 1, 1, 1, 1);
+    }
+
+    @Test
+    void slowFetchesShedWorkersEvenWithABacklog() {
+        consumer = newConsumer(mock(ThreadPoolExecutor.class), 3);
+        stubQueues(10, 60_000);
+        when(fetchLatencyTracker.recentAverageMillis()).thenReturn(5000L);
+
+        List<Integer> targets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            allWorkersBusy();
+            consumer.autoscale();
+            targets.add(targetWorkers());
+        }
+
+        assertThat(targets).containsExactly(2, 1, 1);
+    }
+
+    @Test
+    void workersAboveALoweredTargetRetireBeforeTheirNextPoll() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+        consumer = newConsumer(executor, 4);
+        when(bulkQueue.poll(anyLong(), any())).thenAnswer(invocation -> {
+            Thread.sleep(10);
+            return null;
+        });
+        // Starts four real workers that keep polling an empty queue.
+        ((AtomicInteger) ReflectionTestUtils.getField(consumer, "liveWorkers")).set(0);
+        consumer.adjustPool(null, null);
+        awaitActiveThreads(executor, 4);
+
+        consumer.adjustPool(null, 2);
+
+        assertThat(targetWorkers()).isEqualTo(2);
+        awaitActiveThreads(executor, 2);
+        assertThat(liveWorkers()).isEqualTo(2);
+        assertThat(executor.getActiveCount()).isEqualTo(2);
+    }
+
+    @Test
+    void adjustPoolRejectsInvalidBounds() {
+        consumer = newConsumer(mock(ThreadPoolExecutor.class), 2);
+
+        assertThatThrownBy(() -> consumer.adjustPool(0, null)).isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> consumer.adjustPool(5, 4)).isInstanceOf(BusinessException.class);
+        consumer.adjustPool(3, null);
+        assertThat(targetWorkers()).isEqualTo(3);
+    }
+
+    /** Consumer with {@code workers} live bulk workers and bounds [1, 8]; no threads are started. */
+    private InMemoryTaskConsumer newConsumer(ThreadPoolExecutor executor, int workers) {
+        InMemoryTaskConsumer inMemoryTaskConsumer = new InMemoryTaskConsumer();
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "queueService", queueService);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "fetchLatencyTracker", fetchLatencyTracker);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "consumerExecutor", executor);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "autoscaleEnabled", true);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "minWorkers", 1);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "maxWorkers", 8);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "targetWaitMillis", 30_000L);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "maxFetchLatencyMillis", 2000L);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "idleTicks", IDLE_TICKS);
+        ReflectionTestUtils.setField(inMemoryTaskConsumer, "targetWorkers", workers);
+        ((AtomicInteger) ReflectionTestUtils.getField(inMemoryTaskConsumer, "liveWorkers")).set(workers);
+        return inMemoryTaskConsumer;
+    }
+
+    private void stubQueues(int bulkDepth, long oldestWaitMillis) {
+        when(fastQueue.size()).thenReturn(0);
+        when(bulkQueue.size()).thenReturn(bulkDepth);
+        when(bulkQueue.oldestWaitMillis()).thenReturn(oldestWaitMillis);
+    }
+
+    private void allWorkersBusy() {
+        busyWorkers().set(liveWorkers());
+    }
+
+    private AtomicInteger busyWorkers() {
+        return (AtomicInteger) ReflectionTestUtils.getField(consumer, "busyWorkers");
+    }
+
+    private int liveWorkers() {
+        return ((AtomicInteger) ReflectionTestUtils.getField(consumer, "liveWorkers")).get();
+    }
+
+    private int targetWorkers() {
+        return (int) ReflectionTestUtils.getField(consumer, "targetWorkers");
+    }
+
+    private static void awaitActiveThreads(ThreadPoolExecutor executor, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getActiveCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import com.seeho.downloadcenter.base.model.TaskBulkheadDTO;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairTaskQueueTest {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private TaskBulkhead bulkhead;
+
+    @Test
+    void typesAreServedInProportionToTheirWeight() throws Exception {
+        FairTaskQueue queue = newQueue(100, Map.of("HEAVY", 3, "LIGHT", 1), "");
+        for (int i = 0; i < 6; i++) {
+            queue.offer(task("HEAVY", 1L), 0, TimeUnit.SECONDS);
+            queue.offer(task("LIGHT", 1L), 0, TimeUnit.SECONDS);
+        }
+
+        assertThat(pollTypes(queue, 8)).containsExactly("HEAVY", "HEAVY", "HEAVY", "LIGHT", "HEAVY", "HEAVY", "HEAVY", "LIGHT");
+    }
+
+    @Test
+    void oneUsersBacklogDelaysAnotherUserByAtMostARound() throws Exception {
+        FairTaskQueue queue = newQueue(100, Map.of(), "");
+        for (int i = 0; i < 50; i++) {
+            queue.offer(task("BILLS", 1L), 0, TimeUnit.SECONDS);
+        }
+        DownloadLogPO single = task("BILLS", 2L);
+        queue.offer(single, 0, TimeUnit.SECONDS);
+
+        List<DownloadLogPO> firstRound = List.of(pollAndRelease(queue), pollAndRelease(queue));
+
+        assertThat(firstRound).extracting(DownloadLogPO::getUserId).containsExactly(1L, 2L);
+        assertThat(firstRound).contains(single);
+        assertThat(queue.size()).isEqualTo(49);
+    }
+
+    @Test
+    void typeAtItsLimitIsPassedOverAndResumesWithItsDeficit() throws Exception {
+        FairTaskQueue queue = newQueue(100, Map.of("LIMITED", 2, "OTHER", 1), "LIMITED:1");
+        for (int i = 0; i < 3; i++) {
+            queue.offer(task("LIMITED", 1L), 0, TimeUnit.SECONDS);
+            queue.offer(task("OTHER", 1L), 0, TimeUnit.SECONDS);
+        }
+
+        // LIMITED takes its only permit and one unit of its weight-2 deficit.
+        DownloadLogPO first = queue.poll(0, TimeUnit.SECONDS);
+        assertThat(first.getDownloadType()).isEqualTo("LIMITED");
+        // While that task runs, LIMITED is passed over instead of blocking the queue.
+        assertThat(pollTypes(queue, 2)).containsExactly("OTHER", "OTHER");
+
+        bulkhead.release("LIMITED");
+        // The unit left from before is spent first: one LIMITED task, then OTHER's turn, not a fresh round of two.
+        assertThat(pollTypes(queue, 3)).containsExactly("LIMITED", "OTHER", "LIMITED");
+        assertThat(bulkhead.snapshot()).filteredOn(row -> "LIMITED".equals(row.getDownloadType()))
+                .extracting(TaskBulkheadDTO::getStarvations).containsExactly(1L);
+    }
+
+    @Test
+    void setCapacityAdmitsWaitingOffersAndKeepsTasksBeyondALoweredBound() throws Exception {
+        FairTaskQueue queue = newQueue(1, Map.of(), "");
+        assertThat(queue.offer(task("BILLS", 1L), 0, TimeUnit.SECONDS)).isTrue();
+        assertThat(queue.offer(task("BILLS", 1L), 0, TimeUnit.SECONDS)).isFalse();
+
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.offer(task("BILLS", 2L), 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        queue.setCapacity(2);
+
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(queue.getCapacity()).isEqualTo(2);
+        assertThat(queue.size()).isEqualTo(2);
+
+        queue.setCapacity(1);
+        assertThat(queue.size()).isEqualTo(2);
+        pollAndRelease(queue);
+        assertThat(queue.offer(task("BILLS", 1L), 0, TimeUnit.SECONDS)).isFalse();
+        pollAndRelease(queue);
+        assertThat(queue.offer(task("BILLS", 1L), 0, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private FairTaskQueue newQueue(int capacity, Map<String, Integer> typeWeights, String maxConcurrency) {
+        bulkhead = new TaskBulkhead();
+        ReflectionTestUtils.setField(bulkhead, "maxConcurrency", maxConcurrency);
+        bulkhead.init();
+        return new FairTaskQueue(capacity, type -> typeWeights.getOrDefault(type, 1), user -> 1, bulkhead);
+    }
+
+    private DownloadLogPO task(String downloadType, Long userId) {
+        DownloadLogPO task = new DownloadLogPO();
+        task.setId(ids.incrementAndGet());
+        task.setDownloadType(downloadType);
+        task.setUserId(userId);
+        return task;
+    }
+
+    /** Polls {@code count} tasks, finishing each before the next, and returns their types. */
+    private List<String> pollTypes(FairTaskQueue queue, int count) throws InterruptedException {
+        List<String> types = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            types.add(pollAndRelease(queue).getDownloadType());
+        }
+        return types;
+    }
+
+    private DownloadLogPO pollAndRelease(FairTaskQueue queue) throws InterruptedException {
+        DownloadLogPO task = queue.poll(0, TimeUnit.SECONDS);
+        assertThat(task).isNotNull();
+        bulkhead.release(task.getDownloadType());
+        return task;
+    }
+}
@@ -0,0 +1,118 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedWheelTimerTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-wheel", TICK_MILLIS, 64, dispatcher);
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+        dispatcher.shutdownNow();
+    }
+
+    @Test
+    void firesNoEarlierThanTheDelayAndAtMostAFewTicksLate() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long scheduledAt = System.nanoTime();
+        // Longer than one revolution (64 x 10ms), so the entry waits an extra round in its bucket.
+        timer.schedule(1L, () -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, 900);
+
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(firedAt.get() - scheduledAt);
+        assertThat(elapsedMillis).isBetween(900L, 900L + 10 * TICK_MILLIS);
+        assertThat(timer.pendingCount()).isZero();
+    }
+
+    @Test
+    void cancelledEntriesNeverFire() throws InterruptedException {
+        AtomicInteger fired = new AtomicInteger();
+        timer.schedule(1L, fired::incrementAndGet, 100);
+        timer.schedule(2L, fired::incrementAndGet, 100);
+
+        assertThat(timer.cancel(1L)).isTrue();
+        assertThat(timer.cancel(1L)).isFalse();
+        Thread.sleep(400);
+
+        assertThat(fired.get()).isEqualTo(1);
+        assertThat(timer.cancel(2L)).isFalse();
+    }
+
+    @Test
+    void reschedulingAKeyReplacesItsPendingEntry() throws InterruptedException {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        timer.schedule(1L, () -> fired.add("first"), 50);
+        timer.schedule(1L, () -> fired.add("second"), 100);
+        Thread.sleep(400);
+
+        assertThat(fired).containsExactly("second");
+    }
+
+    @Test
+    void everyEntryEitherFiresOnTimeOrIsCancelled() throws InterruptedException {
+        int entries = 100_000;
+        AtomicInteger fired = new AtomicInteger();
+        AtomicInteger early = new AtomicInteger();
+        AtomicLong maxLateMillis = new AtomicLong();
+        for (int i = 0; i < entries; i++) {
+            // Long enough that no entry is due before the cancel pass below.
+            long delayMillis = 2_000 + i % 1_000;
+            long dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            timer.schedule(i, () -> {
+                long lateMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dueAt);
+                if (lateMillis < 0) {
+                    early.incrementAndGet();
+                }
+                maxLateMillis.accumulateAndGet(lateMillis, Math::max);
+                fired.incrementAndGet();
+            }, delayMillis);
+        }
+        int cancelled = 0;
+        for (int i = 1; i < entries; i += 2) {
+            if (timer.cancel(i)) {
+                cancelled++;
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (fired.get() < entries / 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(200);
+
+        assertThat(cancelled).isEqualTo(entries / 2);
+        assertThat(fired.get()).isEqualTo(entries / 2);
+        assertThat(early.get()).isZero();
+        assertThat(maxLateMillis.get()).isLessThan(500);
+        assertThat(timer.pendingCount()).isZero();
+    }
+
+    @Test
+    void stopReportsPendingEntries() {
+        timer.schedule(1L, () -> { }, 60_000);
+        timer.schedule(2L, () -> { }, 60_000);
+
+        assertThat(timer.stop()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,184 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.seeho.downloadcenter.base.enums.DownloadStatusEnum;
+import com.seeho.downloadcenter.domain.dotask.process.TaskSizeEstimator;
+import com.seeho.downloadcenter.persistence.IService.DownloadLogService;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InMemoryTaskQueueServiceTest {
+
+    private static final long SEGMENT_BYTES = 32 * 1024;
+
+    @TempDir
+    Path journalDir;
+
+    private final DownloadLogService downloadLogService = mock(DownloadLogService.class);
+
+    private final TaskSizeEstimator taskSizeEstimator = mock(TaskSizeEstimator.class);
+
+    private InMemoryTaskQueueService service;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda wrappers resolve columns from the table info MyBatis-Plus otherwise builds at startup.
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), DownloadLogPO.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void rejectedDelayedOfferIsRearmedUntilTheLaneHasRoom() throws Exception {
+        DownloadLogPO queued = task(1L);
+        DownloadLogPO rearmed = task(2L);
+        journalDelayed(queued, rearmed);
+        when(downloadLogService.listByIds(anyCollection())).thenReturn(List.of(queued, rearmed));
+
+        service = newService(1, 3);
+        service.init();
+
+        // Offers so far: the queued task, the rejected first attempt and the re-armed one now waiting for room.
+        verify(taskSizeEstimator, timeout(15_000).times(3)).estimateRows(any());
+        assertThat(service.getFastQueue().poll(1, TimeUnit.SECONDS)).isSameAs(queued);
+        assertThat(service.getFastQueue().poll(10, TimeUnit.SECONDS)).isSameAs(rearmed);
+        verify(downloadLogService, never()).update(any(Wrapper.class));
+    }
+
+    @Test
+    void rejectedDelayedOfferMarksTaskFailedAndAcksJournal() throws Exception {
+        DownloadLogPO queued = task(1L);
+        DownloadLogPO rejected = task(2L);
+        journalDelayed(queued, rejected);
+        when(downloadLogService.listByIds(anyCollection())).thenReturn(List.of(queued, rejected));
+        when(downloadLogService.update(any(Wrapper.class))).thenReturn(true);
+
+        service = newService(1, 0);
+        service.init();
+
+        // The first task takes the only slot of the lane; the second times out on the full lane.
+        verify(downloadLogService, timeout(15_000)).update(any(Wrapper.class));
+        assertThat(service.getFastQueue().poll(1, TimeUnit.SECONDS)).isSameAs(queued);
+        TaskJournal journal = (TaskJournal) ReflectionTestUtils.getField(service, "journal");
+        // The ack follows the update on the dispatcher thread.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (journal.pendingCount() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(journal.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectedDelayedOfferKeepsJournalRecordWhenTaskCannotBeFailed() throws Exception {
+        DownloadLogPO queued = task(1L);
+        DownloadLogPO rejected = task(2L);
+        journalDelayed(queued, rejected);
+        when(downloadLogService.listByIds(anyCollection())).thenReturn(List.of(queued, rejected));
+        when(downloadLogService.update(any(Wrapper.class))).thenThrow(new IllegalStateException("database down"));
+
+        service = newService(1, 0);
+        service.init();
+
+        verify(downloadLogService, timeout(15_000)).update(any(Wrapper.class));
+        TaskJournal journal = (TaskJournal) ReflectionTestUtils.getField(service, "journal");
+        assertThat(journal.pendingCount()).isEqualTo(2);
+    }
+
+    @Test
+    void replayEstimatesOnTheRouterInsteadOfTheStartupThread() throws Exception {
+        DownloadLogPO due = task(1L);
+        journal(System.currentTimeMillis() - 1000, due);
+        when(downloadLogService.listByIds(anyCollection())).thenReturn(List.of(due));
+        service = newService(10, 0);
+        CountDownLatch estimateMayFinish = new CountDownLatch(1);
+        AtomicReference<String> estimatingThread = new AtomicReference<>();
+        when(taskSizeEstimator.estimateRows(any())).thenAnswer(invocation -> {
+            estimatingThread.set(Thread.currentThread().getName());
+            estimateMayFinish.await(10, TimeUnit.SECONDS);
+            return 0L;
+        });
+
+        // Returns while the estimate is still blocked.
+        service.init();
+        verify(taskSizeEstimator, timeout(5_000)).estimateRows(any());
+        assertThat(estimatingThread.get()).startsWith("InMemory-TaskRouter-");
+
+        estimateMayFinish.countDown();
+        assertThat(service.getFastQueue().poll(5, TimeUnit.SECONDS)).isSameAs(due);
+    }
+
+    private void journalDelayed(DownloadLogPO... tasks) throws Exception {
+        journal(System.currentTimeMillis() + 1000, tasks);
+    }
+
+    private void journal(long availableAt, DownloadLogPO... tasks) throws Exception {
+        TaskJournal journal = new TaskJournal(journalDir, SEGMENT_BYTES);
+        journal.recover();
+        for (DownloadLogPO task : tasks) {
+            journal.append(task.getId(), availableAt);
+        }
+        journal.close();
+    }
+
+    private InMemoryTaskQueueService newService(int capacity, int rearmAttempts) {
+        when(taskSizeEstimator.estimateRows(any())).thenReturn(0L);
+        InMemoryTaskQueueService queueService = new InMemoryTaskQueueService();
+        ReflectionTestUtils.setField(queueService, "queueCapacity", capacity);
+        // One router keeps the journal order, so the first task always takes the only slot.
+        ReflectionTestUtils.setField(queueService, "routerThreads", 1);
+        ReflectionTestUtils.setField(queueService, "fastLaneMaxRows", 10_000L);
+        ReflectionTestUtils.setField(queueService, "taskSizeEstimator", taskSizeEstimator);
+        ReflectionTestUtils.setField(queueService, "typeWeights", "");
+        ReflectionTestUtils.setField(queueService, "userWeights", "");
+        TaskBulkhead bulkhead = new TaskBulkhead();
+        ReflectionTestUtils.setField(bulkhead, "maxConcurrency", "");
+        bulkhead.init();
+        ReflectionTestUtils.setField(queueService, "bulkhead", bulkhead);
+        ReflectionTestUtils.setField(queueService, "downloadLogService", downloadLogService);
+        ReflectionTestUtils.setField(queueService, "journalEnabled", true);
+        ReflectionTestUtils.setField(queueService, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(queueService, "journalSegmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(queueService, "journalFlushIntervalMillis", 1000L);
+        ReflectionTestUtils.setField(queueService, "timerTickMillis", 10L);
+        ReflectionTestUtils.setField(queueService, "timerWheelSize", 64);
+        ReflectionTestUtils.setField(queueService, "rearmAttempts", rearmAttempts);
+        ReflectionTestUtils.setField(queueService, "rearmBackoffMillis", 10L);
+        return queueService;
+    }
+
+    private static DownloadLogPO task(Long id) {
+        DownloadLogPO task = new DownloadLogPO();
+        task.setId(id);
+        task.setUserId(1L);
+        task.setDownloadType("DOWNLOAD_ZTO_BILLS");
+        task.setDownloadStatus(DownloadStatusEnum.NOT_EXECUTED.getCode());
+        return task;
+    }
+}
@@ -0,0 +1,88 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskJournalTest {
+
+    private static final long SEGMENT_BYTES = 32 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversOnlyUnackedTasks() throws IOException {
+        TaskJournal journal = new TaskJournal(dir, SEGMENT_BYTES);
+        journal.recover();
+        journal.append(1L, 100L);
+        journal.append(2L, 200L);
+        journal.append(3L, 300L);
+        journal.ack(2L);
+        journal.close();
+
+        List<TaskJournal.Entry> recovered = new TaskJournal(dir, SEGMENT_BYTES).recover();
+
+        assertThat(recovered).extracting(TaskJournal.Entry::getTaskId).containsExactly(1L, 3L);
+        assertThat(recovered).extracting(TaskJournal.Entry::getAvailableAtMillis).containsExactly(100L, 300L);
+    }
+
+    @Test
+    void replayStopsAtTornTailAndKeepsAppending() throws IOException {
+        TaskJournal journal = new TaskJournal(dir, SEGMENT_BYTES);
+        journal.recover();
+        journal.append(1L, 100L);
+        journal.append(2L, 200L);
+        journal.append(3L, 300L);
+        journal.close();
+
+        // A crash in the middle of the third record: its checksum and type never reached the page cache.
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(java.nio.ByteBuffer.allocate(16), 2 * 32 + 16);
+        }
+
+        TaskJournal reopened = new TaskJournal(dir, SEGMENT_BYTES);
+        List<TaskJournal.Entry> recovered = reopened.recover();
+        assertThat(recovered).extracting(TaskJournal.Entry::getTaskId).containsExactly(1L, 2L);
+
+        reopened.append(4L, 400L);
+        reopened.close();
+        assertThat(new TaskJournal(dir, SEGMENT_BYTES).recover())
+                .extracting(TaskJournal.Entry::getTaskId).containsExactly(1L, 2L, 4L);
+    }
+
+    @Test
+    void flushDeletesFullyConsumedSegments() throws IOException {
+        TaskJournal journal = new TaskJournal(dir, 4 * 32);
+        journal.recover();
+        for (long taskId = 1; taskId <= 8; taskId++) {
+            journal.append(taskId, 0L);
+            journal.ack(taskId);
+        }
+        journal.append(9L, 0L);
+        journal.flush();
+
+        assertThat(journal.pendingCount()).isEqualTo(1);
+        journal.close();
+        assertThat(new TaskJournal(dir, 4 * 32).recover()).extracting(TaskJournal.Entry::getTaskId).containsExactly(9L);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = files.filter(file -> file.toString().endsWith(".journal")).collect(Collectors.toList());
+            assertThat(segments).hasSize(1);
+            return segments.get(0);
+        }
+    }
+}
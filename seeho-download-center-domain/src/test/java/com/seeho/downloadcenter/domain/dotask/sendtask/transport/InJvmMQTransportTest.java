@@ -0,0 +1,109 @@
+package com.seeho.downloadcenter.domain.dotask.sendtask.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InJvmMQTransportTest {
+
+    private static final String TOPIC = "test-topic";
+
+    private static final String GROUP = "test-group";
+
+    private final InJvmMQTransport transport = new InJvmMQTransport();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(transport, "maxReconsumeTimes", 2);
+        ReflectionTestUtils.setField(transport, "redeliveryDelayMillis", 10L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        transport.destroy();
+    }
+
+    @Test
+    void publishedMessagesAreConsumedAfterTheirDelay() throws Exception {
+        List<String> keys = new CopyOnWriteArrayList<>();
+        CountDownLatch consumed = new CountDownLatch(3);
+        long sentAt = System.nanoTime();
+        AtomicLong delayedAt = new AtomicLong();
+        transport.subscribe(TOPIC, GROUP, 2, message -> {
+            if ("delayed".equals(message.getKey())) {
+                delayedAt.set(System.nanoTime());
+            }
+            keys.add(message.getKey());
+            consumed.countDown();
+        });
+
+        assertThat(transport.sendBatch(List.of(message("a", 0), message("b", 0), message("delayed", 300)))).isCompleted();
+
+        assertThat(consumed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(keys).containsExactlyInAnyOrder("a", "b", "delayed");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(delayedAt.get() - sentAt)).isGreaterThanOrEqualTo(300L);
+        assertThat(counter("acked")).isEqualTo(3);
+    }
+
+    @Test
+    void failedMessageIsRedeliveredUntilItIsConsumed() throws Exception {
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        CountDownLatch consumed = new CountDownLatch(1);
+        transport.subscribe(TOPIC, GROUP, 1, message -> {
+            attempts.add(message.getReconsumeTimes());
+            if (message.getReconsumeTimes() < 2) {
+                throw new IllegalStateException("handler failed");
+            }
+            consumed.countDown();
+        });
+
+        transport.sendBatch(List.of(message("retry", 0)));
+
+        assertThat(consumed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(attempts).containsExactly(0, 1, 2);
+        assertThat(counter("redelivered")).isEqualTo(2);
+        assertThat(counter("deadLetters")).isZero();
+    }
+
+    @Test
+    void messageIsDeadLetteredAfterMaxReconsumeTimes() throws Exception {
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        transport.subscribe(TOPIC, GROUP, 1, message -> {
+            attempts.add(message.getReconsumeTimes());
+            throw new IllegalStateException("handler failed");
+        });
+
+        transport.sendBatch(List.of(message("poison", 0)));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (counter("deadLetters") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertThat(counter("deadLetters")).isEqualTo(1);
+        assertThat(attempts).containsExactly(0, 1, 2);
+        assertThat(counter("acked")).isZero();
+    }
+
+    private long counter(String name) {
+        return ((AtomicLong) ReflectionTestUtils.getField(transport, name)).get();
+    }
+
+    private static TaskMessage message(String key, long delayMillis) {
+        TaskMessage message = new TaskMessage();
+        message.setTopic(TOPIC);
+        message.setKey(key);
+        message.setBody("{}");
+        message.setDelayMillis(delayMillis);
+        return message;
+    }
+}
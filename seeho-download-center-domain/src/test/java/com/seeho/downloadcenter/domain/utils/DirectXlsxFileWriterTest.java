@@ -0,0 +1,155 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelReader;
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.event.AnalysisEventListener;
+import com.alibaba.excel.read.metadata.ReadSheet;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectXlsxFileWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void numberLongerThanTheBufferIsWrittenWhole() throws Exception {
+        BigDecimal huge = new BigDecimal("1E+100000");
+        Path file = dir.resolve("huge.xlsx");
+
+        DirectXlsxFileWriter<Object> writer = new DirectXlsxFileWriter<>(file.toString(), new SingleColumn());
+        writer.write(List.of("before", huge, Long.MIN_VALUE));
+        writer.close();
+
+        String sheet;
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            sheet = new String(zip.getInputStream(zip.getEntry("xl/worksheets/sheet1.xml")).readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertThat(sheet).contains("<c><v>" + huge.toPlainString() + "</v></c>");
+        assertThat(sheet).contains("<c><v>" + Long.MIN_VALUE + "</v></c>");
+        assertThat(sheet).endsWith("</sheetData></worksheet>");
+    }
+
+    @Test
+    void workbookReadsBackLikeTheEasyExcelOne() throws Exception {
+        List<List<Object>> rows = List.of(
+                List.of("a<b & \"c\" 'd'>", 42L),
+                List.of("emoji \uD83D\uDE00 clef \uD834\uDD1E", -7L),
+                List.of("  padded  ", 0L));
+        Path direct = dir.resolve("direct.xlsx");
+        Path easyExcel = dir.resolve("easyexcel.xlsx");
+
+        DirectXlsxFileWriter<List<Object>> directWriter = new DirectXlsxFileWriter<>(direct.toString(), new ListColumns());
+        directWriter.write(rows);
+        directWriter.close();
+        ExcelFileWriter<List<Object>> easyExcelWriter = ExcelFileWriter.forDynamicHead(easyExcel.toString(),
+                List.of(List.of("text"), List.of("number")), Function.identity());
+        easyExcelWriter.write(rows);
+        easyExcelWriter.close();
+
+        List<Object> directRows = readSheet(direct, 0);
+        assertThat(directRows).isEqualTo(readSheet(easyExcel, 0));
+        assertThat(directRows).hasSize(4);
+        assertThat(directRows.get(2)).isEqualTo(Map.of(0, "emoji \uD83D\uDE00 clef \uD834\uDD1E", 1, "-7"));
+        assertThat(headIsBold(direct)).isTrue();
+        assertThat(headIsBold(easyExcel)).isTrue();
+    }
+
+    @Test
+    void rowsBeyondTheSheetLimitStartANewSheetWithItsOwnHead() throws Exception {
+        Path file = dir.resolve("rollover.xlsx");
+
+        DirectXlsxFileWriter<Object> writer = new DirectXlsxFileWriter<>(file.toString(), new SingleColumn());
+        // Distinct values: a sheet of identical rows compresses past POI's zip bomb ratio.
+        writer.write(LongStream.range(0, ExcelFileWriter.MAX_ROWS_PER_SHEET - 1).boxed().collect(Collectors.toList()));
+        writer.write(List.of(-2L, -3L));
+        writer.close();
+
+        ExcelReader reader = EasyExcel.read(file.toFile()).build();
+        List<ReadSheet> sheets = reader.excelExecutor().sheetList();
+        reader.finish();
+        assertThat(sheets).extracting(ReadSheet::getSheetName).containsExactly("Sheet1", "Sheet2");
+        AtomicInteger firstSheetRows = new AtomicInteger();
+        EasyExcel.read(file.toFile(), new AnalysisEventListener<Map<Integer, String>>() {
+            @Override
+            public void invoke(Map<Integer, String> row, AnalysisContext context) {
+                firstSheetRows.incrementAndGet();
+            }
+
+            @Override
+            public void doAfterAllAnalysed(AnalysisContext context) {
+            }
+        }).sheet(0).headRowNumber(0).doRead();
+        assertThat(firstSheetRows).hasValue(ExcelFileWriter.MAX_ROWS_PER_SHEET);
+        assertThat(readSheet(file, 1)).containsExactly(Map.of(0, "value"), Map.of(0, "-2"), Map.of(0, "-3"));
+    }
+
+    /** Every row of the sheet, head included, as column index to cell text. */
+    private static List<Object> readSheet(Path file, int sheetNo) {
+        return EasyExcel.read(file.toFile()).sheet(sheetNo).headRowNumber(0).autoTrim(false).doReadSync();
+    }
+
+    private static boolean headIsBold(Path file) throws Exception {
+        try (Workbook workbook = new XSSFWorkbook(file.toFile())) {
+            Cell head = workbook.getSheetAt(0).getRow(0).getCell(0);
+            Cell data = workbook.getSheetAt(0).getRow(1).getCell(0);
+            return workbook.getFontAt(head.getCellStyle().getFontIndexAsInt()).getBold()
+                    && !workbook.getFontAt(data.getCellStyle().getFontIndexAsInt()).getBold();
+        }
+    }
+
+    /** Each row is a list of its cells. */
+    private static class ListColumns implements ExportColumns<List<Object>> {
+
+        @Override
+        public List<String> getHeader() {
+            return List.of("text", "number");
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+
+        @Override
+        public Object cell(List<Object> row, int column) {
+            return row.get(column);
+        }
+    }
+
+    /** Each row is its own single cell. */
+    private static class SingleColumn implements ExportColumns<Object> {
+
+        @Override
+        public List<String> getHeader() {
+            return List.of("value");
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public Object cell(Object row, int column) {
+            return row;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.seeho.downloadcenter.domain.utils;
+
+import com.seeho.downloadcenter.base.common.PageRequest;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParamSplitUtilsTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+    /** Rows per epoch second, or per key for key ranges. */
+    private final TreeMap<Long, Long> rows = new TreeMap<>();
+
+    private final AtomicInteger countQueries = new AtomicInteger();
+
+    /** Rows per exact timestamp, for bounds finer than a second. */
+    private final TreeMap<LocalDateTime, Long> preciseRows = new TreeMap<>();
+
+    @Test
+    void minimalSegmentAboveParamRowsIsReadInOnePage() {
+        rows.put(second(0), 1000L);
+        rows.put(second(30), 7000L);
+
+        List<SplitSegment<TimeCondition>> plan = splitter().planSegments(condition(0, 59));
+
+        assertThat(plan).hasSize(2);
+        SplitSegment<TimeCondition> dense = plan.get(1);
+        assertThat(dense.getCondition().getStart()).isEqualTo(START.plusSeconds(30));
+        assertThat(dense.getCondition().getEnd()).isEqualTo(START.plusSeconds(30));
+        assertThat(dense.getRowCount()).isEqualTo(7000L);
+        assertThat(dense.getCondition().getPageIndex()).isEqualTo(1);
+        assertThat(dense.getCondition().getPageSize()).isGreaterThanOrEqualTo(7000);
+    }
+
+    @Test
+    void hotSpotIsPagedForPagedReads() {
+        rows.put(second(10), 20000L);
+
+        List<SplitSegment<TimeCondition>> plan = splitter().planSegments(condition(0, 59));
+
+        assertThat(plan).extracting(segment -> segment.getCondition().getPageIndex()).containsExactly(1, 2, 3, 4);
+        assertThat(plan).allSatisfy(segment -> assertThat(segment.getCondition().getPageSize()).isEqualTo(5000));
+        assertThat(plan.stream().mapToLong(SplitSegment::getRowCount).sum()).isEqualTo(20000L);
+    }
+
+    @Test
+    void hotSpotIsOneSegmentForStreamedReads() {
+        rows.put(second(10), 20000L);
+        rows.put(second(40), 100L);
+
+        List<SplitSegment<TimeCondition>> plan = splitter().withStreamingReads(true).planSegments(condition(0, 59));
+
+        assertThat(plan).hasSize(2);
+        SplitSegment<TimeCondition> hot = plan.get(0);
+        assertThat(hot.getCondition().getStart()).isEqualTo(START.plusSeconds(10));
+        assertThat(hot.getCondition().getEnd()).isEqualTo(START.plusSeconds(10));
+        assertThat(hot.getRowCount()).isEqualTo(20000L);
+        assertThat(hot.getCondition().getPageIndex()).isEqualTo(1);
+        assertThat(hot.getCondition().getPageSize()).isGreaterThanOrEqualTo(20000);
+    }
+
+    @Test
+    void subSecondOuterBoundsAreKeptWhenSplitting() {
+        LocalDateTime start = START.plusNanos(500_000_000);
+        LocalDateTime end = START.plusSeconds(59).plusNanos(999_999_999);
+        preciseRows.put(START, 500L);
+        preciseRows.put(START.plusSeconds(10), 4000L);
+        preciseRows.put(START.plusSeconds(59).plusNanos(500_000_000), 2000L);
+        TimeCondition condition = new TimeCondition();
+        condition.setStart(start);
+        condition.setEnd(end);
+
+        List<SplitSegment<TimeCondition>> plan = ParamSplitUtils.forLocalDateTime(TimeCondition::getStart,
+                TimeCondition::getEnd, TimeCondition::setStart, TimeCondition::setEnd, this::preciseCount)
+                .planSegments(condition);
+
+        assertThat(plan).hasSize(2);
+        assertThat(plan.get(0).getCondition().getStart()).isEqualTo(start);
+        assertThat(plan.get(0).getCondition().getEnd()).isEqualTo(START.plusSeconds(29));
+        assertThat(plan.get(1).getCondition().getStart()).isEqualTo(START.plusSeconds(30));
+        assertThat(plan.get(1).getCondition().getEnd()).isEqualTo(end);
+        assertThat(plan).extracting(SplitSegment::getRowCount).containsExactly(4000L, 2000L);
+    }
+
+    @Test
+    void openBoundWithinParamRowsIsKeptWhole() {
+        rows.put(second(10), 1000L);
+        TimeCondition open = condition(0, 59);
+        open.setStart(null);
+
+        List<SplitSegment<TimeCondition>> plan = splitter().planSegments(open);
+
+        assertThat(plan).hasSize(1);
+        assertThat(plan.get(0).getCondition().getStart()).isNull();
+        assertThat(plan.get(0).getRowCount()).isEqualTo(1000L);
+    }
+
+    @Test
+    void openBoundAboveParamRowsIsRejected() {
+        rows.put(second(10), 6000L);
+        TimeCondition open = condition(0, 59);
+        open.setEnd(null);
+
+        assertThatThrownBy(() -> splitter().planSegments(open))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("open bound");
+    }
+
+    @Test
+    void keyRangeIsSeededWithEqualWidthRanges() {
+        for (long id = 1; id <= 20000; id++) {
+            rows.put(id, 1L);
+        }
+
+        List<SplitSegment<KeyCondition>> plan = keySplitter().planSegments(keyCondition(1L, 20000L));
+
+        assertThat(plan).extracting(segment -> segment.getCondition().getMinId()).containsExactly(1L, 5001L, 10001L, 15001L);
+        assertThat(plan).extracting(segment -> segment.getCondition().getMaxId()).containsExactly(5000L, 10000L, 15000L, 20000L);
+        assertThat(plan).allSatisfy(segment -> assertThat(segment.getRowCount()).isEqualTo(5000L));
+        // One COUNT for the whole range, one per seed.
+        assertThat(countQueries).hasValue(5);
+    }
+
+    @Test
+    void keyRangeProbesOpenBoundsAndBisectsDenseSeeds() {
+        for (long id = 1; id <= 10000; id++) {
+            rows.put(id, 1L);
+        }
+        rows.put(100L, 4001L);
+
+        List<SplitSegment<KeyCondition>> plan = keySplitter()
+                .withBoundsProbe(condition -> new LongRange(rows.firstKey(), rows.lastKey()))
+                .planSegments(keyCondition(null, null));
+
+        assertThat(plan).extracting(segment -> segment.getCondition().getMinId()).containsExactly(1L, 835L, 1668L, 3335L, 6669L);
+        assertThat(plan).extracting(segment -> segment.getCondition().getMaxId()).containsExactly(834L, 1667L, 3334L, 6668L, 10000L);
+        assertThat(plan.stream().mapToLong(SplitSegment::getRowCount).sum()).isEqualTo(14000L);
+        assertThat(plan).allSatisfy(segment -> assertThat(segment.getRowCount()).isLessThanOrEqualTo(5000L));
+    }
+
+    private ParamSplitUtils<KeyCondition> keySplitter() {
+        return ParamSplitUtils.forLongRange(KeyCondition::getMinId, KeyCondition::getMaxId,
+                KeyCondition::setMinId, KeyCondition::setMaxId,
+                condition -> count(condition.getMinId(), condition.getMaxId()));
+    }
+
+    private ParamSplitUtils<TimeCondition> splitter() {
+        return ParamSplitUtils.forLocalDateTime(TimeCondition::getStart, TimeCondition::getEnd,
+                TimeCondition::setStart, TimeCondition::setEnd, this::count);
+    }
+
+    private Long count(TimeCondition condition) {
+        return count(condition.getStart() == null ? null : condition.getStart().toEpochSecond(ZoneOffset.UTC),
+                condition.getEnd() == null ? null : condition.getEnd().toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private Long preciseCount(TimeCondition condition) {
+        return preciseRows.subMap(condition.getStart(), true, condition.getEnd(), true)
+                .values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /** A {@code null} bound is open. */
+    private Long count(Long low, Long high) {
+        countQueries.incrementAndGet();
+        return rows.subMap(low == null ? Long.MIN_VALUE : low, true, high == null ? Long.MAX_VALUE : high, true)
+                .values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static long second(int offset) {
+        return START.plusSeconds(offset).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static TimeCondition condition(int fromSecond, int toSecond) {
+        TimeCondition condition = new TimeCondition();
+        condition.setStart(START.plusSeconds(fromSecond));
+        condition.setEnd(START.plusSeconds(toSecond));
+        return condition;
+    }
+
+    private static KeyCondition keyCondition(Long minId, Long maxId) {
+        KeyCondition condition = new KeyCondition();
+        condition.setMinId(minId);
+        condition.setMaxId(maxId);
+        return condition;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class KeyCondition extends PageRequest {
+
+        private Long minId;
+
+        private Long maxId;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class TimeCondition extends PageRequest {
+
+        private LocalDateTime start;
+
+        private LocalDateTime end;
+    }
+}
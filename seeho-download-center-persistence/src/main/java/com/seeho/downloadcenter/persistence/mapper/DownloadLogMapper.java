@@ -3,6 +3,11 @@ package com.seeho.downloadcenter.persistence.mapper;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Mapper for {@link DownloadLogPO}.
@@ -10,4 +15,13 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface DownloadLogMapper extends BaseMapper<DownloadLogPO> {
 
+    /**
+     * Locks up to {@code limit} claimable pending tasks with {@code FOR UPDATE SKIP LOCKED}, skipping tasks of
+     * {@code excludedTypes}.
+     */
+    List<Long> selectClaimableIdsSkipLocked(@Param("status") Byte status,
+                                            @Param("now") LocalDateTime now,
+                                            @Param("staleBefore") LocalDateTime staleBefore,
+                                            @Param("excludedTypes") Collection<String> excludedTypes,
+                                            @Param("limit") int limit);
 }
@@ -28,13 +28,22 @@ public class DownloadLogPO implements Serializable {
     private Integer retryCount;
     private String downloadCondition;
     private String titles;
+    /** Output format code, see ExportFormatEnum; null means XLSX. */
+    private String exportFormat;
     private String remark;
     private String fileUrl;
 
     private String fileName;
 
+    /** Not stored for tasks created in bulk; {@code MessageKeyUtils.of} derives it from type and id. */
     private String messageKey;
 
+    /** When the task may be claimed in db queue mode; written with the task, {@code null} in other modes. */
+    private LocalDateTime availableTime;
+    /** Worker batch holding the claim in db queue mode. */
+    private String claimOwner;
+    private LocalDateTime claimTime;
+
     private Long createUserId;
     private LocalDateTime createTime;
     private Long updateUserId;
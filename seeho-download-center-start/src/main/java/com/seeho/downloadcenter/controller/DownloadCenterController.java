@@ -5,13 +5,14 @@ import com.seeho.downloadcenter.base.common.PageResult;
 import com.seeho.downloadcenter.domain.utils.BeanUtil;
 import org.springframework.util.Assert;
 import com.seeho.downloadcenter.base.enums.DownloadRefServiceEnum;
-import com.seeho.downloadcenter.base.enums.DownloadStatusEnum;
+import com.seeho.downloadcenter.base.enums.ExportFormatEnum;
 import com.seeho.downloadcenter.domain.downloadlog.DownloadLogMangerService;
 import com.seeho.downloadcenter.utils.FileUtils;
 import com.seeho.downloadcenter.base.model.DownloadListDTO;
 import com.seeho.downloadcenter.base.model.DownloadLogDTO;
 import com.seeho.downloadcenter.base.model.QueryDownloadDTO;
 import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import com.seeho.downloadcenter.request.BatchDownloadLogRequest;
 import com.seeho.downloadcenter.request.DownloadLogRequest;
 import com.seeho.downloadcenter.request.QueryDownloadRequest;
 import com.seeho.downloadcenter.vo.DownloadLogVO;
@@ -20,6 +21,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
+import java.util.stream.Collectors;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -32,11 +34,23 @@ public class DownloadCenterController {
 
     @PostMapping("/createExportTask")
     public Response<Long> createExportTask(@RequestBody @Validated DownloadLogRequest request) {
+        Long taskId = downloadLogMangerService.createExportTask(toDownloadLogDTO(request));
+        return Response.success(taskId);
+    }
+
+    /** Creates all tasks in one transaction; returns their ids in request order. */
+    @PostMapping("/createExportTasks")
+    public Response<List<Long>> createExportTasks(@RequestBody @Validated BatchDownloadLogRequest request) {
+        List<DownloadLogDTO> dtos = request.getTasks().stream().map(this::toDownloadLogDTO).collect(Collectors.toList());
+        return Response.success(downloadLogMangerService.createExportTasks(dtos));
+    }
+
+    private DownloadLogDTO toDownloadLogDTO(DownloadLogRequest request) {
         DownloadRefServiceEnum downloadEnum = DownloadRefServiceEnum.matchDownloadType(request.getDownloadEnum());
         DownloadLogDTO copy = BeanUtil.copy(request, DownloadLogDTO.class);
         copy.setDownloadType(downloadEnum);
-        Long taskId = downloadLogMangerService.createExportTask(copy);
-        return Response.success(taskId);
+        copy.setExportFormat(ExportFormatEnum.matchFormat(request.getExportFormat()));
+        return copy;
     }
 
     @PostMapping("/queryExportTask")
@@ -57,7 +71,7 @@ public class DownloadCenterController {
 
     @PostMapping("/cancelTask/{logId}")
     public Response<Void> cancelTask(@PathVariable(name = "logId") Long logId) {
-        Boolean updated = downloadLogMangerService.updateDownloadLogStatus(logId, DownloadStatusEnum.CANCELLED, DownloadStatusEnum.NOT_EXECUTED);
+        Boolean updated = downloadLogMangerService.cancelTask(logId);
         Assert.isTrue(updated,"Task status changed, cannot cancel");
         return Response.success();
     }
@@ -0,0 +1,62 @@
+package com.seeho.downloadcenter.controller;
+
+import com.seeho.downloadcenter.base.common.Response;
+import com.seeho.downloadcenter.base.model.ConsumerPoolDTO;
+import com.seeho.downloadcenter.base.model.TaskBulkheadDTO;
+import com.seeho.downloadcenter.base.model.TaskQueueLaneDTO;
+import com.seeho.downloadcenter.domain.dotask.process.consumer.InMemoryTaskConsumer;
+import com.seeho.downloadcenter.domain.dotask.sendtask.impl.InMemoryTaskQueueService;
+import com.seeho.downloadcenter.request.ConsumerPoolRequest;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Operational view and runtime tuning of the in-memory task queue and its consumers.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/queue")
+@ConditionalOnProperty(name = "download.task.queue.mode", havingValue = "memory")
+public class TaskQueueAdminController {
+
+    @Resource
+    private InMemoryTaskQueueService inMemoryTaskQueueService;
+
+    @Resource
+    private InMemoryTaskConsumer inMemoryTaskConsumer;
+
+    @GetMapping("/lanes")
+    public Response<List<TaskQueueLaneDTO>> queryLanes() {
+        return Response.success(inMemoryTaskQueueService.laneSnapshot());
+    }
+
+    @GetMapping("/pool")
+    public Response<ConsumerPoolDTO> queryPool() {
+        return Response.success(inMemoryTaskConsumer.poolSnapshot());
+    }
+
+    /** Changes worker bounds and lane capacity without a restart. */
+    @PostMapping("/pool")
+    public Response<ConsumerPoolDTO> adjustPool(@RequestBody ConsumerPoolRequest request) {
+        if (request.getMinWorkers() != null || request.getMaxWorkers() != null) {
+            inMemoryTaskConsumer.adjustPool(request.getMinWorkers(), request.getMaxWorkers());
+        }
+        if (request.getQueueCapacity() != null) {
+            inMemoryTaskQueueService.resizeCapacity(request.getQueueCapacity());
+        }
+        return Response.success(inMemoryTaskConsumer.poolSnapshot());
+    }
+
+    @GetMapping("/bulkheads")
+    public Response<List<TaskBulkheadDTO>> queryBulkheads() {
+        return Response.success(inMemoryTaskQueueService.bulkheadSnapshot());
+    }
+}
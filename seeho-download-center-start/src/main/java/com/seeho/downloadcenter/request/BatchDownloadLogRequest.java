@@ -0,0 +1,20 @@
+package com.seeho.downloadcenter.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Export tasks created together, e.g. one per merchant from a scheduler.
+ */
+@Data
+public class BatchDownloadLogRequest {
+
+    @NotEmpty(message = "tasks must not be empty")
+    @Size(max = 1000, message = "tasks must contain at most 1000 entries")
+    @Valid
+    private List<DownloadLogRequest> tasks;
+}
@@ -0,0 +1,17 @@
+package com.seeho.downloadcenter.request;
+
+import lombok.Data;
+
+/**
+ * Runtime change to the consumer pool; fields left {@code null} keep their current value.
+ */
+@Data
+public class ConsumerPoolRequest {
+
+    private Integer minWorkers;
+
+    private Integer maxWorkers;
+
+    /** New capacity of each size lane. */
+    private Integer queueCapacity;
+}
@@ -25,4 +25,10 @@ public class DownloadLogRequest {
 
     /** Dynamic column configuration supplied by the client. */
     private List<DownloadColumnDTO> titles;
+
+    /**
+     * Optional output format, defaults to XLSX.
+     * @see com.seeho.downloadcenter.base.enums.ExportFormatEnum
+     */
+    private String exportFormat;
 }
@@ -0,0 +1,13 @@
+-- Adds the claim columns of download.task.queue.mode=db to an existing MySQL download_log table.
+-- Run once before switching a deployment to db mode; schema.sql already has them for new tables.
+ALTER TABLE download_log
+    ADD COLUMN available_time DATETIME NULL AFTER message_key,
+    ADD COLUMN claim_owner VARCHAR(128) NULL AFTER available_time,
+    ADD COLUMN claim_time DATETIME NULL AFTER claim_owner,
+    ADD INDEX idx_status_available (download_status, available_time);
+
+-- Tasks still pending from another queue mode become claimable right away.
+UPDATE download_log
+SET available_time = create_time
+WHERE download_status = 0
+  AND available_time IS NULL;
@@ -9,10 +9,14 @@ CREATE TABLE IF NOT EXISTS download_log (
     retry_count INT DEFAULT 0,
     download_condition TEXT,
     titles TEXT,
+    export_format VARCHAR(20) DEFAULT 'XLSX',
     remark VARCHAR(500),
     file_url VARCHAR(500),
     file_name VARCHAR(255),
     message_key VARCHAR(255),
+    available_time DATETIME,
+    claim_owner VARCHAR(128),
+    claim_time DATETIME,
     create_user_id BIGINT,
     create_time DATETIME,
     update_user_id BIGINT,
@@ -25,3 +29,5 @@ CREATE INDEX IF NOT EXISTS idx_user_id ON download_log(user_id);
 CREATE INDEX IF NOT EXISTS idx_download_status ON download_log(download_status);
 CREATE INDEX IF NOT EXISTS idx_message_key ON download_log(message_key);
 CREATE INDEX IF NOT EXISTS idx_create_time ON download_log(create_time);
+-- Claim scan of download.task.queue.mode=db. Existing MySQL tables: migration/mysql/001_download_log_db_queue.sql.
+CREATE INDEX IF NOT EXISTS idx_status_available ON download_log(download_status, available_time);
@@ -0,0 +1,87 @@
+package com.seeho.downloadcenter.controller;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seeho.downloadcenter.ApplicationStart;
+import com.seeho.downloadcenter.base.enums.DownloadStatusEnum;
+import com.seeho.downloadcenter.persistence.IService.DownloadLogService;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Batch task creation through {@code POST /createExportTasks} against H2.
+ */
+@SpringBootTest(classes = ApplicationStart.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:controllertest;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "download.task.queue.journal.enabled=false"
+})
+@AutoConfigureMockMvc
+class DownloadCenterControllerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Resource
+    private MockMvc mockMvc;
+
+    @Resource
+    private DownloadLogService downloadLogService;
+
+    @BeforeEach
+    void setUp() {
+        downloadLogService.remove(new LambdaQueryWrapper<DownloadLogPO>().isNotNull(DownloadLogPO::getId));
+    }
+
+    @Test
+    void createExportTasksInsertsEveryTaskAndReturnsIdsInRequestOrder() throws Exception {
+        String body = """
+                {"tasks": [
+                  {"downloadName": "bills-a", "downloadEnum": "DOWNLOAD_ZTO_BILLS", "downloadCondition": "{}"},
+                  {"downloadName": "bills-b", "downloadEnum": "DOWNLOAD_ZTO_BILLS", "downloadCondition": "{}", "exportFormat": "CSV"}
+                ]}
+                """;
+
+        String response = mockMvc.perform(post("/createExportTasks").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode json = MAPPER.readTree(response);
+        assertThat(json.get("code").asInt()).isEqualTo(200);
+        List<Long> ids = new ArrayList<>();
+        json.get("data").forEach(id -> ids.add(id.asLong()));
+        assertThat(ids).hasSize(2);
+        assertThat(ids.stream().map(id -> downloadLogService.getById(id).getDownloadName())).containsExactly("bills-a", "bills-b");
+        assertThat(downloadLogService.listByIds(ids)).allSatisfy(task -> {
+            assertThat(task.getDownloadType()).isEqualTo("DOWNLOAD_ZTO_BILLS");
+            assertThat(task.getDownloadStatus()).isEqualTo(DownloadStatusEnum.NOT_EXECUTED.getCode());
+        });
+    }
+
+    @Test
+    void createExportTasksRejectsAnInvalidTaskWithoutInsertingAny() throws Exception {
+        String body = """
+                {"tasks": [
+                  {"downloadName": "bills-a", "downloadEnum": "DOWNLOAD_ZTO_BILLS", "downloadCondition": "{}"},
+                  {"downloadName": "", "downloadEnum": "DOWNLOAD_ZTO_BILLS", "downloadCondition": "{}"}
+                ]}
+                """;
+
+        mockMvc.perform(post("/createExportTasks").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest());
+
+        assertThat(downloadLogService.count()).isZero();
+    }
+}
@@ -0,0 +1,185 @@
+package com.seeho.downloadcenter.domain.downloadlog.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.seeho.downloadcenter.ApplicationStart;
+import com.seeho.downloadcenter.base.enums.DownloadStatusEnum;
+import com.seeho.downloadcenter.domain.dotask.sendtask.impl.DbTaskQueueService;
+import com.seeho.downloadcenter.domain.downloadlog.DownloadLogMangerService;
+import com.seeho.downloadcenter.persistence.IService.DownloadLogService;
+import com.seeho.downloadcenter.persistence.po.DownloadLogPO;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Claims and publishing of the db queue mode against H2, for both claim strategies.
+ */
+@SpringBootTest(classes = ApplicationStart.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:claimtest;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "download.task.queue.journal.enabled=false"
+})
+class ClaimPendingTasksTest {
+
+    private static final long CLAIM_TIMEOUT_MINUTES = 5;
+
+    @Resource
+    private DownloadLogMangerService downloadLogMangerService;
+
+    @Resource
+    private DownloadLogService downloadLogService;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        downloadLogService.remove(new LambdaQueryWrapper<DownloadLogPO>().isNotNull(DownloadLogPO::getId));
+        now = LocalDateTime.now().withNano(0);
+    }
+
+    @ParameterizedTest(name = "skipLocked={0}")
+    @ValueSource(booleans = {true, false})
+    void claimsAvailableUnclaimedTasksOldestFirst(boolean skipLocked) {
+        Long older = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusMinutes(2), null, null);
+        Long newer = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusMinutes(1), null, null);
+        insert(DownloadStatusEnum.NOT_EXECUTED, now.plusHours(1), null, null);
+        insert(DownloadStatusEnum.NOT_EXECUTED, null, null, null);
+        insert(DownloadStatusEnum.EXECUTING, now.minusMinutes(3), null, null);
+
+        List<DownloadLogPO> claimed = claim("node-a#1", 10, skipLocked);
+
+        assertThat(claimed).extracting(DownloadLogPO::getId).containsExactly(older, newer);
+        assertThat(claimed).allSatisfy(task -> assertThat(task.getClaimOwner()).isEqualTo("node-a#1"));
+        assertThat(claim("node-b#1", 10, skipLocked)).isEmpty();
+    }
+
+    @ParameterizedTest(name = "skipLocked={0}")
+    @ValueSource(booleans = {true, false})
+    void claimsNoMoreThanTheLimit(boolean skipLocked) {
+        Long first = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusMinutes(3), null, null);
+        Long second = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusMinutes(2), null, null);
+        Long third = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusMinutes(1), null, null);
+
+        assertThat(claim("node-a#1", 2, skipLocked)).extracting(DownloadLogPO::getId).containsExactly(first, second);
+        assertThat(claim("node-b#1", 2, skipLocked)).extracting(DownloadLogPO::getId).containsExactly(third);
+    }
+
+    @ParameterizedTest(name = "skipLocked={0}")
+    @ValueSource(booleans = {true, false})
+    void takesOverStaleClaimsAndClaimsOfEarlierAttempts(boolean skipLocked) {
+        Long stale = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusHours(2),
+                "dead-node#7", now.minusMinutes(CLAIM_TIMEOUT_MINUTES + 1));
+        insert(DownloadStatusEnum.NOT_EXECUTED, now.minusHours(2), "live-node#3", now.minusMinutes(1));
+        // Retried after its first attempt's claim: available again since a minute ago.
+        Long retried = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusMinutes(1), "live-node#2", now.minusMinutes(2));
+
+        List<DownloadLogPO> claimed = claim("node-a#1", 10, skipLocked);
+
+        assertThat(claimed).extracting(DownloadLogPO::getId).containsExactlyInAnyOrder(stale, retried);
+        assertThat(claimed).allSatisfy(task -> assertThat(task.getClaimOwner()).isEqualTo("node-a#1"));
+    }
+
+    @ParameterizedTest(name = "skipLocked={0}")
+    @ValueSource(booleans = {true, false})
+    void releasedClaimsCanBeClaimedAgain(boolean skipLocked) {
+        Long task = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusMinutes(1), null, null);
+        assertThat(claim("node-a#1", 10, skipLocked)).hasSize(1);
+
+        assertThat(downloadLogMangerService.releaseClaims("node-a#")).isTrue();
+
+        assertThat(claim("node-b#1", 10, skipLocked)).extracting(DownloadLogPO::getId).containsExactly(task);
+    }
+
+    @ParameterizedTest(name = "skipLocked={0}")
+    @ValueSource(booleans = {true, false})
+    void leavesTasksOfExcludedTypesUnclaimed(boolean skipLocked) {
+        Long saturated = insert("SATURATED_TYPE", now.minusMinutes(2));
+        Long other = insert("DOWNLOAD_ZTO_BILLS", now.minusMinutes(1));
+
+        assertThat(claim("node-a#1", 10, List.of("SATURATED_TYPE"), skipLocked))
+                .extracting(DownloadLogPO::getId).containsExactly(other);
+        assertThat(claim("node-a#2", 10, List.of(), skipLocked))
+                .extracting(DownloadLogPO::getId).containsExactly(saturated);
+    }
+
+    @Test
+    void releaseClaimFreesOnlyTheOwnersClaim() {
+        Long task = insert(DownloadStatusEnum.NOT_EXECUTED, now.minusMinutes(1), null, null);
+        assertThat(claim("node-a#1", 10, true)).hasSize(1);
+
+        assertThat(downloadLogMangerService.releaseClaim(task, "node-b#1")).isFalse();
+        assertThat(downloadLogMangerService.releaseClaim(task, "node-a#1")).isTrue();
+
+        assertThat(claim("node-b#1", 10, true)).extracting(DownloadLogPO::getId).containsExactly(task);
+    }
+
+    @Test
+    void publishStampsOnlyRowsWrittenWithoutStaging() {
+        DbTaskQueueService queueService = new DbTaskQueueService();
+        ReflectionTestUtils.setField(queueService, "downloadLogService", downloadLogService);
+        LocalDateTime staged = now.minusMinutes(1);
+        Long stagedTask = insert(DownloadStatusEnum.NOT_EXECUTED, staged, null, null);
+        Long unstagedTask = insert(DownloadStatusEnum.NOT_EXECUTED, null, null, null);
+
+        queueService.sendTaskToMQ(downloadLogService.getById(stagedTask));
+        queueService.sendTaskToMQ(downloadLogService.getById(unstagedTask));
+
+        assertThat(downloadLogService.getById(stagedTask).getAvailableTime()).isEqualTo(staged);
+        assertThat(downloadLogService.getById(unstagedTask).getAvailableTime()).isNotNull();
+    }
+
+    @Test
+    void batchPublishReportsTasksItCouldNotFind() {
+        DbTaskQueueService queueService = new DbTaskQueueService();
+        ReflectionTestUtils.setField(queueService, "downloadLogService", downloadLogService);
+        Long task = insert(DownloadStatusEnum.NOT_EXECUTED, null, null, null);
+        DownloadLogPO missing = downloadLogService.getById(task);
+        missing.setId(task + 1000);
+
+        Map<Long, String> failures = queueService.sendTasksToMQ(List.of(downloadLogService.getById(task), missing));
+
+        assertThat(failures).containsOnlyKeys(missing.getId());
+        assertThat(downloadLogService.getById(task).getAvailableTime()).isNotNull();
+    }
+
+    private List<DownloadLogPO> claim(String claimToken, int limit, boolean skipLocked) {
+        return claim(claimToken, limit, List.of(), skipLocked);
+    }
+
+    private List<DownloadLogPO> claim(String claimToken, int limit, List<String> excludedTypes, boolean skipLocked) {
+        return downloadLogMangerService.claimPendingTasks(claimToken, limit,
+                LocalDateTime.now().minusMinutes(CLAIM_TIMEOUT_MINUTES), excludedTypes, skipLocked);
+    }
+
+    private Long insert(DownloadStatusEnum status, LocalDateTime availableTime, String claimOwner, LocalDateTime claimTime) {
+        return insert("DOWNLOAD_ZTO_BILLS", status, availableTime, claimOwner, claimTime);
+    }
+
+    private Long insert(String downloadType, LocalDateTime availableTime) {
+        return insert(downloadType, DownloadStatusEnum.NOT_EXECUTED, availableTime, null, null);
+    }
+
+    private Long insert(String downloadType, DownloadStatusEnum status, LocalDateTime availableTime,
+                        String claimOwner, LocalDateTime claimTime) {
+        DownloadLogPO task = new DownloadLogPO();
+        task.setDownloadName("claim-test");
+        task.setDownloadType(downloadType);
+        task.setDownloadStatus(status.getCode());
+        task.setRetryCount(0);
+        task.setAvailableTime(availableTime);
+        task.setClaimOwner(claimOwner);
+        task.setClaimTime(claimTime);
+        task.setCreateTime(now);
+        downloadLogService.save(task);
+        return task.getId();
+    }
+}